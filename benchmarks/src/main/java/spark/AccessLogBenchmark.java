@@ -0,0 +1,86 @@
+package spark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Logging every request from 4 threads: an after("/*") filter writing through a JUL FileHandler
+ * versus accessLog(), which only fills a ring buffer slot on the request path
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AccessLogBenchmark {
+
+    private Path directory;
+    private FileHandler fileHandler;
+    private Service julService;
+    private Service accessLogService;
+    private LocalClient julClient;
+    private LocalClient accessLogClient;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("access-log-benchmark");
+
+        Logger logger = Logger.getLogger("access");
+        logger.setUseParentHandlers(false);
+        fileHandler = new FileHandler(directory.resolve("jul.log").toString());
+        fileHandler.setFormatter(new SimpleFormatter());
+        logger.addHandler(fileHandler);
+        julService = Service.ignite().port(-1);
+        julService.get("/users/:id", (request, response) -> "user");
+        julService.after("/*", (request, response) -> logger.info(request.requestMethod() + " " + request.pathInfo()
+            + " " + response.status() + " " + request.ip() + " " + request.userAgent()));
+        julClient = julService.localClient();
+
+        accessLogService = Service.ignite().port(-1);
+        accessLogService.get("/users/:id", (request, response) -> "user");
+        accessLogService.accessLog(directory.resolve("access.log"));
+        accessLogClient = accessLogService.localClient();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        julService.stop();
+        accessLogService.stop();
+        fileHandler.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public LocalResponse julFilter() {
+        return julClient.get("/users/42");
+    }
+
+    @Benchmark
+    public LocalResponse accessLog() {
+        return accessLogClient.get("/users/42");
+    }
+}
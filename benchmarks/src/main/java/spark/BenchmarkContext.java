@@ -0,0 +1,260 @@
+package spark;
+
+import io.javalin.config.Key;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.HttpStatus;
+import io.javalin.json.JsonMapper;
+import io.javalin.plugin.ContextPlugin;
+import io.javalin.security.RouteRole;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Minimal in-memory Javalin context so the bridge wrappers can be measured without Jetty.
+ * Only the accessors used by Request, Response and Session are backed by data,
+ * everything that would need a servlet request fails loudly.
+ */
+public class BenchmarkContext implements Context {
+
+    private final Map<String, String> headers = new HashMap<>();
+    private final Map<String, List<String>> queryParams = new HashMap<>();
+    private final Map<String, String> pathParams = new HashMap<>();
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final Map<String, Object> sessionAttributes = new HashMap<>();
+    private final Map<String, String> responseHeaders = new HashMap<>();
+
+    private String result;
+    private int status = 200;
+    private String contentType;
+
+    public BenchmarkContext requestHeader(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public BenchmarkContext queryParam(String name, String value) {
+        queryParams.put(name, List.of(value));
+        return this;
+    }
+
+    public BenchmarkContext pathParam(String name, String value) {
+        pathParams.put(name, value);
+        return this;
+    }
+
+    /**
+     * Clears per-request output so the context can be reused between invocations
+     */
+    public void reset() {
+        result = null;
+        status = 200;
+        contentType = null;
+        attributes.clear();
+        responseHeaders.clear();
+    }
+
+    @Override
+    public String header(String header) {
+        return headers.get(header);
+    }
+
+    @Override
+    public Map<String, String> headerMap() {
+        return headers;
+    }
+
+    @Override
+    public Context header(String name, String value) {
+        responseHeaders.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String queryParam(String key) {
+        List<String> values = queryParams.get(key);
+        return values == null ? null : values.get(0);
+    }
+
+    @Override
+    public List<String> queryParams(String key) {
+        return queryParams.getOrDefault(key, Collections.emptyList());
+    }
+
+    @Override
+    public Map<String, List<String>> queryParamMap() {
+        return queryParams;
+    }
+
+    @Override
+    public String pathParam(String key) {
+        return pathParams.get(key);
+    }
+
+    @Override
+    public Map<String, String> pathParamMap() {
+        return pathParams;
+    }
+
+    @Override
+    public void attribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T attribute(String key) {
+        return (T) attributes.get(key);
+    }
+
+    @Override
+    public void sessionAttribute(String key, Object value) {
+        sessionAttributes.put(key, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T sessionAttribute(String key) {
+        return (T) sessionAttributes.get(key);
+    }
+
+    @Override
+    public HandlerType method() {
+        return HandlerType.GET;
+    }
+
+    @Override
+    public Context status(int status) {
+        this.status = status;
+        return this;
+    }
+
+    @Override
+    public HttpStatus status() {
+        return HttpStatus.forStatus(status);
+    }
+
+    @Override
+    public Context contentType(String contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+
+    @Override
+    public String contentType() {
+        return contentType;
+    }
+
+    @Override
+    public Context result(String resultString) {
+        this.result = resultString;
+        return this;
+    }
+
+    @Override
+    public String result() {
+        return result;
+    }
+
+    // === Members that need a servlet container ===
+
+    @Override
+    public HttpServletRequest req() {
+        throw new UnsupportedOperationException("No servlet request in benchmarks");
+    }
+
+    @Override
+    public HttpServletResponse res() {
+        throw new UnsupportedOperationException("No servlet response in benchmarks");
+    }
+
+    @Override
+    public HandlerType handlerType() {
+        return HandlerType.GET;
+    }
+
+    @Override
+    public String matchedPath() {
+        return "/";
+    }
+
+    @Override
+    public String endpointHandlerPath() {
+        return "/";
+    }
+
+    @Override
+    public <T> T appData(Key<T> key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JsonMapper jsonMapper() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <T> T with(Class<? extends ContextPlugin<?, T>> clazz) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean strictContentTypes() {
+        return false;
+    }
+
+    @Override
+    public ServletOutputStream outputStream() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Context minSizeForCompression(int minSizeForCompression) {
+        return this;
+    }
+
+    @Override
+    public Context result(InputStream resultStream) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public InputStream resultInputStream() {
+        return null;
+    }
+
+    @Override
+    public void future(Supplier<? extends CompletableFuture<?>> future) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void redirect(String location, HttpStatus status) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeJsonStream(Stream<?> stream) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Context skipRemainingHandlers() {
+        return this;
+    }
+
+    @Override
+    public Set<RouteRole> routeRoles() {
+        return Collections.emptySet();
+    }
+}
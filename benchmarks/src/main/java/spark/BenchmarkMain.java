@@ -0,0 +1,23 @@
+package spark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the bridge benchmarks with the GC profiler attached, so every result
+ * reports gc.alloc.rate.norm next to the throughput score.
+ * Accepts the usual JMH command line, e.g. "RequestAccess -f 1 -wi 3 -i 5".
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,73 @@
+package spark;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binding a JSON body with bodyAs() versus body() as a String, parsed to a tree, then mapped by hand
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BindingBenchmark {
+
+    public record Item(String sku, int quantity) {
+    }
+
+    public record Order(long id, String customer, List<Item> items) {
+    }
+
+    private static final String BODY = "{\"id\": 42, \"customer\": \"c-17\", \"items\": ["
+        + "{\"sku\": \"a-1\", \"quantity\": 2}, {\"sku\": \"b-2\", \"quantity\": 1}, {\"sku\": \"c-3\", \"quantity\": 5}]}";
+
+    private Service service;
+    private LocalClient client;
+
+    @Setup
+    public void setup() {
+        service = Service.ignite().port(-1);
+        service.post("/bind", (request, response) -> request.bodyAs(Order.class).items().size());
+        service.post("/tree", (request, response) -> tree(request.body()).items().size());
+        client = service.localClient();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Order tree(String body) throws Exception {
+        Map<String, Object> json = (Map<String, Object>) Json.parse(new StringReader(body));
+        List<Item> items = ((List<Map<String, Object>>) json.get("items")).stream()
+            .map(item -> new Item((String) item.get("sku"), ((Long) item.get("quantity")).intValue()))
+            .toList();
+        return new Order((Long) json.get("id"), (String) json.get("customer"), items);
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.stop();
+    }
+
+    @Benchmark
+    public LocalResponse bodyAs() {
+        return client.post("/bind", BODY);
+    }
+
+    @Benchmark
+    public LocalResponse bodyThenTree() {
+        return client.post("/tree", BODY);
+    }
+}
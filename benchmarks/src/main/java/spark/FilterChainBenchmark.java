@@ -0,0 +1,60 @@
+package spark;
+
+import io.javalin.http.Handler;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * How a request scales with the number of before/after filters wrapped around one route
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterChainBenchmark {
+
+    @Param({"0", "1", "3", "10"})
+    public int depth;
+
+    private BenchmarkContext context;
+    private Handler[] before;
+    private Handler route;
+    private Handler[] after;
+
+    @Setup
+    public void setup() {
+        context = new BenchmarkContext().requestHeader("Authorization", "Bearer token");
+        before = new Handler[depth];
+        after = new Handler[depth];
+        for (int i = 0; i < depth; i++) {
+            before[i] = Service.filterHandler((request, response) -> request.headers("Authorization"));
+            after[i] = Service.filterHandler((request, response) -> response.header("X-Filtered", "1"));
+        }
+        route = Service.routeHandler((request, response) -> "ok");
+    }
+
+    @Benchmark
+    public String chain() throws Exception {
+        context.reset();
+        for (Handler handler : before) {
+            handler.handle(context);
+        }
+        route.handle(context);
+        for (Handler handler : after) {
+            handler.handle(context);
+        }
+        return context.result();
+    }
+}
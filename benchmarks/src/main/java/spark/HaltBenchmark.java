@@ -0,0 +1,63 @@
+package spark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rejecting a request from an auth filter: halt() versus throwing an exception mapped by exception()
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HaltBenchmark {
+
+    static class UnauthorizedException extends RuntimeException {
+    }
+
+    private Service service;
+    private LocalClient client;
+
+    @Setup
+    public void setup() {
+        service = Service.ignite().port(-1);
+        service.before("/halt/*", (request, response) -> service.halt(401, "Unauthorized"));
+        service.before("/throw/*", (request, response) -> {
+            throw new UnauthorizedException();
+        });
+        service.exception(UnauthorizedException.class, (exception, request, response) -> {
+            response.status(401);
+            response.body("Unauthorized");
+        });
+        service.get("/halt/data", (request, response) -> "data");
+        service.get("/throw/data", (request, response) -> "data");
+        client = service.localClient();
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.stop();
+    }
+
+    @Benchmark
+    public LocalResponse halt() {
+        return client.get("/halt/data");
+    }
+
+    @Benchmark
+    public LocalResponse exception() {
+        return client.get("/throw/data");
+    }
+}
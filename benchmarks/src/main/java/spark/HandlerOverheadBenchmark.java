@@ -0,0 +1,68 @@
+package spark;
+
+import io.javalin.http.Handler;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the Spark route/filter wrappers compared to plain Javalin handlers doing the same work
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HandlerOverheadBenchmark {
+
+    private BenchmarkContext context;
+
+    private Handler rawRoute;
+    private Handler sparkRoute;
+    private Handler rawFilter;
+    private Handler sparkFilter;
+
+    @Setup
+    public void setup() {
+        context = new BenchmarkContext().pathParam("name", "bench");
+
+        rawRoute = ctx -> ctx.result("Hello " + ctx.pathParam("name"));
+        sparkRoute = Service.routeHandler((request, response) -> "Hello " + request.params(":name"));
+
+        rawFilter = ctx -> ctx.status(200);
+        sparkFilter = Service.filterHandler((request, response) -> response.status(200));
+    }
+
+    @Benchmark
+    public String rawJavalinRoute() throws Exception {
+        rawRoute.handle(context);
+        return context.result();
+    }
+
+    @Benchmark
+    public String sparkRoute() throws Exception {
+        sparkRoute.handle(context);
+        return context.result();
+    }
+
+    @Benchmark
+    public BenchmarkContext rawJavalinFilter() throws Exception {
+        rawFilter.handle(context);
+        return context;
+    }
+
+    @Benchmark
+    public BenchmarkContext sparkFilter() throws Exception {
+        sparkFilter.handle(context);
+        return context;
+    }
+}
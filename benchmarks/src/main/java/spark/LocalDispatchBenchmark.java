@@ -0,0 +1,61 @@
+package spark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a whole request through the pipeline (routing, filters, wrappers, result writing)
+ * without any network, using LocalClient on a service that never starts a listener
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalDispatchBenchmark {
+
+    private Service service;
+    private LocalClient client;
+
+    @Setup
+    public void setup() {
+        service = Service.ignite().port(-1);
+        service.get("/hello/:name", (request, response) -> "Hello " + request.params(":name"));
+        service.before("/filtered/*", (request, response) -> response.header("X-Filtered", "1"));
+        service.after("/filtered/*", (request, response) -> response.type("text/plain"));
+        service.get("/filtered/:name", (request, response) -> "Hello " + request.params(":name"));
+        client = service.localClient();
+    }
+
+    @TearDown
+    public void tearDown() {
+        service.stop();
+    }
+
+    @Benchmark
+    public LocalResponse route() {
+        return client.get("/hello/bench");
+    }
+
+    @Benchmark
+    public LocalResponse routeWithFilters() {
+        return client.get("/filtered/bench");
+    }
+
+    @Benchmark
+    public LocalResponse routeWithHeaders() {
+        return client.request("GET", "/hello/bench", Map.of("Accept", "text/plain", "X-Request-Id", "42"), null);
+    }
+}
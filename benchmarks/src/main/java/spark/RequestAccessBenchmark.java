@@ -0,0 +1,61 @@
+package spark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Request accessors handlers call on every request
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestAccessBenchmark {
+
+    private Request request;
+
+    @Setup
+    public void setup() {
+        BenchmarkContext context = new BenchmarkContext()
+            .requestHeader("Accept", "application/json")
+            .queryParam("q", "spark")
+            .pathParam("name", "bench");
+        request = new Request(context);
+    }
+
+    @Benchmark
+    public String header() {
+        return request.headers("Accept");
+    }
+
+    @Benchmark
+    public String queryParam() {
+        return request.queryParams("q");
+    }
+
+    @Benchmark
+    public String queryParamWithDefault() {
+        return request.queryParams("missing", "none");
+    }
+
+    @Benchmark
+    public String sparkStyleParam() {
+        return request.params(":name");
+    }
+
+    @Benchmark
+    public String javalinStyleParam() {
+        return request.params("name");
+    }
+}
@@ -0,0 +1,59 @@
+package spark;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Session attribute access, both through Request shortcuts and a held Session
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SessionBenchmark {
+
+    private Request request;
+    private Session session;
+
+    @Setup
+    public void setup() {
+        BenchmarkContext context = new BenchmarkContext();
+        HashMap<String, Object> attributes = new HashMap<>();
+        attributes.put("user", "bench");
+        context.sessionAttribute("spark-session", attributes);
+        request = new Request(context);
+        session = request.session();
+    }
+
+    @Benchmark
+    public Object requestSessionGet() {
+        return request.session("user");
+    }
+
+    @Benchmark
+    public void requestSessionSet() {
+        request.session("count", 1);
+    }
+
+    @Benchmark
+    public Object sessionGet() {
+        return session.attribute("user");
+    }
+
+    @Benchmark
+    public void sessionSet() {
+        session.attribute("count", 1);
+    }
+}
@@ -0,0 +1,324 @@
+package spark;
+
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * Access log written off the request path. Each request claims a slot in a bounded lock-free
+ * ring buffer and fills in method, route pattern, status, bytes, latency, IP and user agent;
+ * a background thread drains the ring in batches to the file, rotating it by size.
+ * Requests never touch the disk or a lock: when the ring is full the entry is dropped and counted.
+ * <p>
+ * Lines look like: 2024-05-01T12:00:00.123Z 10.0.0.7 GET /users/{id} 200 512 1.25ms "curl/8.5.0"
+ */
+public class AccessLog {
+
+    private static final Logger logger = Logger.getLogger(AccessLog.class.getName());
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final long flushIntervalNanos;
+
+    // Bounded multi-producer ring (Vyukov): a slot is free for the producer at position p when its
+    // sequence is p, and holds an entry for the writer when its sequence is p + 1
+    private final Entry[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong rotations = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private final StringBuilder batch = new StringBuilder(64 * 1024);
+    private FileChannel channel;
+    private long size;
+
+    AccessLog(Path file, AccessLogOptions options) {
+        this.file = file.toAbsolutePath();
+        this.maxFileBytes = options.maxFileBytes;
+        this.maxFiles = options.maxFiles;
+        this.flushIntervalNanos = options.flushInterval.toNanos();
+
+        // At least 2: with one slot, a written entry's sequence would read as free to the next producer
+        int capacity = Math.max(2, Integer.highestOneBit(options.capacity - 1) << 1);
+        slots = new Entry[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Entry();
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open access log " + this.file, e);
+        }
+        writer = new Thread(this::drain, "spark-access-log-" + threads.incrementAndGet());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records ctx's request, called by Javalin once the response is written
+     */
+    void record(Context ctx, float executionTimeMs) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                // Full: the writer is behind, the entry is dropped rather than waited for
+                dropped.incrementAndGet();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+        int index = (int) position & mask;
+        Entry entry = slots[index];
+        entry.time = System.currentTimeMillis();
+        entry.method = ctx.method().name();
+        // No endpoint is known yet when a before filter was the last handler to run
+        entry.pattern = ctx.handlerType() == HandlerType.BEFORE ? "" : ctx.endpointHandlerPath();
+        entry.status = ctx.res().getStatus();
+        entry.bytes = bytesWritten(ctx.res());
+        entry.latencyMs = executionTimeMs;
+        entry.ip = ctx.req().getRemoteAddr();
+        entry.userAgent = ctx.req().getHeader("User-Agent");
+        sequences.lazySet(index, position + 1);
+    }
+
+    private static long bytesWritten(HttpServletResponse res) {
+        if (res instanceof Response jetty) {
+            return jetty.getHttpOutput().getWritten();
+        }
+        if (res instanceof LocalServletResponse local) {
+            return local.size();
+        }
+        return -1;
+    }
+
+    private void drain() {
+        while (true) {
+            boolean stopping = !running;
+            int drained = 0;
+            try {
+                drained = writeBatch();
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                logger.log(Level.WARNING, "Cannot write access log " + file, e);
+            }
+            if (drained == 0) {
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Cannot close access log " + file, e);
+        }
+    }
+
+    /**
+     * Formats the entries available now, up to the ring's capacity, and writes them in one go
+     *
+     * @return entries written
+     */
+    private int writeBatch() throws IOException {
+        batch.setLength(0);
+        int count = 0;
+        while (count < slots.length) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Entry entry = slots[index];
+            entry.appendTo(batch);
+            entry.clear();
+            sequences.lazySet(index, head + slots.length);
+            head++;
+            count++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(batch));
+        if (!channel.isOpen()) {
+            // A failed rotation left no file open
+            open();
+        }
+        while (bytes.hasRemaining()) {
+            size += channel.write(bytes);
+        }
+        try {
+            if (size >= maxFileBytes) {
+                rotate();
+            }
+        } finally {
+            // Counted once rotated, so a reader that saw the count sees the renamed files
+            written.addAndGet(count);
+        }
+        return count;
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        if (maxFiles > 0) {
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                Path rotated = rotated(i);
+                if (Files.exists(rotated)) {
+                    Files.move(rotated, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        open();
+        rotations.incrementAndGet();
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    /**
+     * Stops the writer once it has written what's buffered, waiting up to timeoutMillis
+     */
+    void close(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * @return entries written to the file
+     */
+    public long written() {
+        return written.get();
+    }
+
+    /**
+     * @return entries dropped because the buffer was full
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    public long rotations() {
+        return rotations.get();
+    }
+
+    /**
+     * @return failed batch writes, each logged as a warning; their entries are lost
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    private static final class Entry {
+
+        private static final DateTimeFormatter TIME = DateTimeFormatter.ISO_INSTANT;
+
+        long time;
+        String method;
+        String pattern;
+        int status;
+        long bytes;
+        float latencyMs;
+        String ip;
+        String userAgent;
+
+        void appendTo(StringBuilder out) {
+            TIME.formatTo(Instant.ofEpochMilli(time), out);
+            out.append(' ').append(ip != null ? ip : "-")
+                .append(' ').append(method)
+                // Javalin puts a message rather than a path there when no route matched
+                .append(' ').append(pattern != null && pattern.startsWith("/") ? pattern : "-")
+                .append(' ').append(status)
+                .append(' ');
+            if (bytes < 0) {
+                out.append('-');
+            } else {
+                out.append(bytes);
+            }
+            long hundredths = Math.round(latencyMs * 100.0);
+            out.append(' ').append(hundredths / 100).append('.');
+            if (hundredths % 100 < 10) {
+                out.append('0');
+            }
+            out.append(hundredths % 100).append("ms ");
+            if (userAgent == null) {
+                out.append('-');
+            } else {
+                out.append('"');
+                for (int i = 0; i < userAgent.length(); i++) {
+                    char c = userAgent.charAt(i);
+                    if (c == '"' || c == '\\') {
+                        out.append('\\').append(c);
+                    } else if (c >= 0x20) {
+                        out.append(c);
+                    }
+                }
+                out.append('"');
+            }
+            out.append('\n');
+        }
+
+        void clear() {
+            method = null;
+            pattern = null;
+            ip = null;
+            userAgent = null;
+        }
+    }
+}
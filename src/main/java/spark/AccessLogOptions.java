@@ -0,0 +1,51 @@
+package spark;
+
+import java.time.Duration;
+
+/**
+ * Settings for accessLog(...), e.g.
+ * new AccessLogOptions().maxFileBytes(10 * 1024 * 1024).maxFiles(3)
+ */
+public class AccessLogOptions {
+
+    int capacity = 8192;
+    Duration flushInterval = Duration.ofMillis(100);
+    long maxFileBytes = 100L * 1024 * 1024;
+    int maxFiles = 5;
+
+    /**
+     * Entries buffered between the requests and the writer, default 8192 (rounded up to a power of two, at least 2).
+     * Requests finding the buffer full drop their entry rather than wait.
+     */
+    public AccessLogOptions capacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * How long the writer sleeps once it has drained the buffer, default 100ms
+     */
+    public AccessLogOptions flushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * Size at which the file is rotated to file.1, file.1 to file.2 and so on, default 100MB
+     */
+    public AccessLogOptions maxFileBytes(long maxFileBytes) {
+        this.maxFileBytes = maxFileBytes;
+        return this;
+    }
+
+    /**
+     * Rotated files kept besides the current one, default 5; 0 truncates the file instead
+     */
+    public AccessLogOptions maxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+        return this;
+    }
+}
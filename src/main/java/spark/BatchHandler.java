@@ -0,0 +1,164 @@
+package spark;
+
+import io.javalin.http.Context;
+import io.javalin.util.JavalinLogger;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Batch endpoint: takes a JSON array of sub-requests
+ * <pre>
+ * [{"method": "GET", "path": "/users/1"},
+ *  {"method": "POST", "path": "/events", "headers": {"Content-Type": "application/json"}, "body": {"type": "start"}}]
+ * </pre>
+ * and answers with a JSON array of their results, in the same order:
+ * <pre>
+ * [{"status": 200, "headers": {"Content-Type": "application/json"}, "body": "{\"id\":1}"}, ...]
+ * </pre>
+ * Sub-requests run in parallel, each on its own virtual thread, through the same filters and
+ * routes as a request over the network but dispatched in memory. They inherit the batch
+ * request's headers (e.g. Authorization) unless they set their own, and share its session.
+ * Bodies are text.
+ */
+class BatchHandler {
+
+    private static final ExecutorService DISPATCHERS = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("spark-batch-", 0).factory());
+
+    // Describe the batch request's own body and connection, not the sub-request's
+    private static final Set<String> NOT_INHERITED = Set.of(
+        "content-length", "content-type", "transfer-encoding", "accept-encoding", "connection", "expect");
+
+    private final Service service;
+    private final String path;
+    private final int maxRequests;
+
+    BatchHandler(Service service, String path, int maxRequests) {
+        this.service = service;
+        this.path = path;
+        this.maxRequests = maxRequests;
+    }
+
+    void handle(Context ctx) throws Exception {
+        List<Object> items = new ArrayList<>();
+        try {
+            // Held to maxRequestSize, and read no further than maxRequests elements
+            Json json = new Json(new InputStreamReader(new Request(ctx).bodyStream(), StandardCharsets.UTF_8));
+            if (json.peek() != '[') {
+                badRequest(ctx, "Expected a JSON array of requests");
+                return;
+            }
+            json.consume('[');
+            for (boolean first = true; json.more(']', first); first = false) {
+                if (items.size() == maxRequests) {
+                    badRequest(ctx, "At most " + maxRequests + " requests per batch");
+                    return;
+                }
+                items.add(json.value());
+            }
+            json.end();
+        } catch (IllegalArgumentException e) {
+            badRequest(ctx, e.getMessage());
+            return;
+        }
+
+        Map<String, List<String>> inherited = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Enumeration<String> names = ctx.req().getHeaderNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            if (!NOT_INHERITED.contains(name.toLowerCase(Locale.ROOT))) {
+                inherited.put(name, Collections.list(ctx.req().getHeaders(name)));
+            }
+        }
+        String remoteAddr = ctx.req().getRemoteAddr();
+        LocalServletRequest.Sessions sessions = LocalServletRequest.Sessions.of(ctx.req());
+
+        List<CompletableFuture<Map<String, Object>>> results = new ArrayList<>(items.size());
+        for (Object item : items) {
+            results.add(dispatch(item, inherited, remoteAddr, sessions));
+        }
+        ctx.future(() -> CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenRun(() -> {
+            List<Map<String, Object>> responses = new ArrayList<>(results.size());
+            for (CompletableFuture<Map<String, Object>> result : results) {
+                responses.add(result.join());
+            }
+            ctx.contentType("application/json");
+            ctx.result(Json.write(responses, new StringBuilder()).toString());
+        }));
+    }
+
+    private CompletableFuture<Map<String, Object>> dispatch(Object item, Map<String, List<String>> inherited, String remoteAddr,
+                                                            LocalServletRequest.Sessions sessions) {
+        if (!(item instanceof Map<?, ?> request) || !(request.get("path") instanceof String target) || !target.startsWith("/")) {
+            return CompletableFuture.completedFuture(error(400, "Each request needs a path starting with /"));
+        }
+        int query = target.indexOf('?');
+        if ((query < 0 ? target : target.substring(0, query)).equals(path)) {
+            return CompletableFuture.completedFuture(error(400, "Batches can't be nested"));
+        }
+        String method = request.get("method") instanceof String m ? m : "GET";
+
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(inherited);
+        if (request.get("headers") instanceof Map<?, ?> own) {
+            own.forEach((name, value) -> headers.put(name.toString(), List.of(String.valueOf(value))));
+        }
+
+        Object body = request.get("body");
+        byte[] bytes = null;
+        if (body instanceof String text) {
+            bytes = text.getBytes(StandardCharsets.UTF_8);
+        } else if (body != null) {
+            // Inline JSON bodies are passed on as JSON text
+            bytes = Json.write(body, new StringBuilder()).toString().getBytes(StandardCharsets.UTF_8);
+        }
+        byte[] requestBody = bytes;
+
+        return CompletableFuture
+            .supplyAsync(() -> service.dispatch(method, target, headers, requestBody, remoteAddr, sessions), DISPATCHERS)
+            .thenCompose(response -> response)
+            .thenApply(BatchHandler::result)
+            .exceptionally(failure -> {
+                // Logged as Javalin logs an uncaught exception at the top level
+                JavalinLogger.warn("Uncaught exception in batched " + method + " " + target,
+                    failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure);
+                return error(500, "Internal Server Error");
+            });
+    }
+
+    private static Map<String, Object> result(LocalServletResponse response) {
+        Map<String, Object> headers = new LinkedHashMap<>();
+        response.headers().forEach((name, values) -> headers.put(name, values.size() == 1 ? values.get(0) : values));
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", response.getStatus());
+        result.put("headers", headers);
+        result.put("body", new String(response.body(), StandardCharsets.UTF_8));
+        return result;
+    }
+
+    private static Map<String, Object> error(int status, String message) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", status);
+        result.put("headers", Map.of());
+        result.put("body", message);
+        return result;
+    }
+
+    private static void badRequest(Context ctx, String message) {
+        ctx.status(400);
+        ctx.result(message);
+    }
+}
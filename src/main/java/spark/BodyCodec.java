@@ -0,0 +1,626 @@
+package spark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Binds JSON and form bodies to records and POJOs. The codec for a type is built once, on first
+ * use, from method handles to its canonical constructor or its no-arg constructor and setters
+ * (public setX methods, else non-static fields), and cached per class; binding a request then
+ * only invokes those handles. JSON is read token by token straight into the target, no tree.
+ * <p>
+ * Supported property types: String, primitives and their wrappers, BigDecimal, BigInteger, enums,
+ * UUID, LocalDate, LocalDateTime, Instant, List/Set/Collection, arrays, Map with String keys,
+ * nested records and POJOs, and Object (bound to Json's maps, lists and scalars).
+ * Unknown fields are skipped, missing ones keep their default.
+ */
+abstract class BodyCodec {
+
+    private static final ClassValue<BodyCodec> CODECS = new ClassValue<>() {
+        @Override
+        protected BodyCodec computeValue(Class<?> type) {
+            return create(type);
+        }
+    };
+
+    /**
+     * Reads one JSON value of type from in
+     *
+     * @throws IllegalArgumentException if the input isn't valid JSON or doesn't fit type
+     */
+    static <T> T json(Reader in, Class<T> type) throws IOException {
+        Json json = new Json(in);
+        Object value = CODECS.get(type).read(json);
+        json.end();
+        return cast(type, value);
+    }
+
+    /**
+     * Binds form parameters to the properties of a record or POJO
+     *
+     * @throws IllegalArgumentException if a value doesn't fit its property
+     */
+    static <T> T form(Map<String, List<String>> params, Class<T> type) {
+        BodyCodec codec = CODECS.get(type);
+        if (!(codec instanceof ObjectCodec objectCodec)) {
+            throw new IllegalStateException("Forms bind to records and POJOs, not " + type.getName());
+        }
+        return cast(type, objectCodec.bind(params));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Class<T> type, Object value) {
+        return type.isPrimitive() ? (T) value : type.cast(value);
+    }
+
+    /**
+     * Reads a value from JSON, null for a JSON null
+     */
+    abstract Object read(Json json) throws IOException;
+
+    /**
+     * Converts a form value
+     */
+    Object text(String value) {
+        throw new IllegalArgumentException("Cannot bind a form value to " + name());
+    }
+
+    /**
+     * Converts all the form values given for a property
+     */
+    Object values(List<String> values) {
+        return values.isEmpty() ? null : text(values.get(0));
+    }
+
+    abstract String name();
+
+    private static BodyCodec create(Class<?> type) {
+        BodyCodec scalar = scalar(type);
+        if (scalar != null) {
+            return scalar;
+        }
+        if (type == Object.class) {
+            return new TreeCodec();
+        }
+        if (type.isArray()) {
+            return new ArrayCodec(type.getComponentType(), of(type.getComponentType()));
+        }
+        if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)) {
+            return of(type, new Type[] {Object.class, Object.class});
+        }
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalStateException("Cannot bind to abstract type " + type.getName());
+        }
+        try {
+            return type.isRecord() ? ObjectCodec.forRecord(type) : ObjectCodec.forPojo(type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot bind to " + type.getName() + ": " + e, e);
+        }
+    }
+
+    /**
+     * Codec for a property's declared type; nested classes resolve through the per-class cache
+     * when first used, so self-referencing types don't recurse while their codec is built
+     */
+    static BodyCodec of(Type type) {
+        if (type instanceof Class<?> clazz) {
+            return new Deferred(clazz);
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            return of((Class<?>) parameterized.getRawType(), parameterized.getActualTypeArguments());
+        }
+        if (type instanceof GenericArrayType array) {
+            Type component = array.getGenericComponentType();
+            Class<?> raw = component instanceof ParameterizedType parameterized
+                ? (Class<?>) parameterized.getRawType() : Object.class;
+            return new ArrayCodec(raw, of(component));
+        }
+        // Type variables and wildcards
+        return new Deferred(Object.class);
+    }
+
+    private static BodyCodec of(Class<?> raw, Type[] arguments) {
+        if (Map.class.isAssignableFrom(raw)) {
+            if (arguments[0] != String.class && arguments[0] != Object.class) {
+                throw new IllegalStateException("Map keys must be strings: " + raw.getName());
+            }
+            return new MapCodec(of(arguments[1]));
+        }
+        if (Set.class.isAssignableFrom(raw)) {
+            return new CollectionCodec(LinkedHashSet::new, of(arguments[0]));
+        }
+        if (Collection.class.isAssignableFrom(raw)) {
+            return new CollectionCodec(ArrayList::new, of(arguments[0]));
+        }
+        return new Deferred(raw);
+    }
+
+    private static BodyCodec scalar(Class<?> type) {
+        if (type == String.class || type == CharSequence.class) {
+            return new ScalarCodec(type, value -> value);
+        }
+        if (type == int.class || type == Integer.class) {
+            return new ScalarCodec(type, Integer::valueOf);
+        }
+        if (type == long.class || type == Long.class) {
+            return new ScalarCodec(type, Long::valueOf);
+        }
+        if (type == double.class || type == Double.class) {
+            return new ScalarCodec(type, Double::valueOf);
+        }
+        if (type == float.class || type == Float.class) {
+            return new ScalarCodec(type, Float::valueOf);
+        }
+        if (type == short.class || type == Short.class) {
+            return new ScalarCodec(type, Short::valueOf);
+        }
+        if (type == byte.class || type == Byte.class) {
+            return new ScalarCodec(type, Byte::valueOf);
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return new ScalarCodec(type, value -> switch (value) {
+                case "true", "on" -> Boolean.TRUE;
+                case "false", "off" -> Boolean.FALSE;
+                default -> throw new IllegalArgumentException("Not a boolean: " + value);
+            });
+        }
+        if (type == char.class || type == Character.class) {
+            return new ScalarCodec(type, value -> {
+                if (value.length() != 1) {
+                    throw new IllegalArgumentException("Not a character: " + value);
+                }
+                return value.charAt(0);
+            });
+        }
+        if (type == BigDecimal.class) {
+            return new ScalarCodec(type, BigDecimal::new);
+        }
+        if (type == BigInteger.class) {
+            return new ScalarCodec(type, BigInteger::new);
+        }
+        if (type == UUID.class) {
+            return new ScalarCodec(type, UUID::fromString);
+        }
+        if (type == LocalDate.class) {
+            return new ScalarCodec(type, LocalDate::parse);
+        }
+        if (type == LocalDateTime.class) {
+            return new ScalarCodec(type, LocalDateTime::parse);
+        }
+        if (type == Instant.class) {
+            return new ScalarCodec(type, Instant::parse);
+        }
+        if (type.isEnum()) {
+            Map<String, Object> constants = new HashMap<>();
+            for (Object constant : type.getEnumConstants()) {
+                constants.put(((Enum<?>) constant).name(), constant);
+            }
+            return new ScalarCodec(type, value -> {
+                Object constant = constants.get(value);
+                if (constant == null) {
+                    throw new IllegalArgumentException("No " + type.getSimpleName() + " named " + value);
+                }
+                return constant;
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Value parsed from its text, which JSON may give as a string, a number or a boolean
+     */
+    private static final class ScalarCodec extends BodyCodec {
+
+        private final Class<?> type;
+        private final Function<String, Object> parse;
+
+        ScalarCodec(Class<?> type, Function<String, Object> parse) {
+            this.type = type;
+            this.parse = parse;
+        }
+
+        @Override
+        Object read(Json json) throws IOException {
+            int next = json.peek();
+            if (next == '"') {
+                return text(json.string());
+            }
+            if (next == '-' || (next >= '0' && next <= '9')) {
+                // Parsed from the token as written, so BigDecimal keeps every digit
+                return text(json.numberText());
+            }
+            if (next == 't' || next == 'f') {
+                return text(json.value().toString());
+            }
+            if (json.nextIsNull()) {
+                return null;
+            }
+            throw json.error("Expected " + name());
+        }
+
+        @Override
+        Object text(String value) {
+            return parse.apply(value);
+        }
+
+        @Override
+        String name() {
+            return type.getSimpleName();
+        }
+    }
+
+    /**
+     * Whatever JSON holds, as Json parses it
+     */
+    private static final class TreeCodec extends BodyCodec {
+
+        @Override
+        Object read(Json json) throws IOException {
+            return json.value();
+        }
+
+        @Override
+        Object text(String value) {
+            return value;
+        }
+
+        @Override
+        Object values(List<String> values) {
+            return values.size() == 1 ? values.get(0) : List.copyOf(values);
+        }
+
+        @Override
+        String name() {
+            return "Object";
+        }
+    }
+
+    private static final class Deferred extends BodyCodec {
+
+        private final Class<?> type;
+        private BodyCodec codec;
+
+        Deferred(Class<?> type) {
+            this.type = type;
+        }
+
+        private BodyCodec codec() {
+            BodyCodec resolved = codec;
+            if (resolved == null) {
+                // Racy but idempotent, every thread gets the same cached codec
+                resolved = CODECS.get(type);
+                codec = resolved;
+            }
+            return resolved;
+        }
+
+        @Override
+        Object read(Json json) throws IOException {
+            return codec().read(json);
+        }
+
+        @Override
+        Object text(String value) {
+            return codec().text(value);
+        }
+
+        @Override
+        Object values(List<String> values) {
+            return codec().values(values);
+        }
+
+        @Override
+        String name() {
+            return type.getSimpleName();
+        }
+    }
+
+    private static final class CollectionCodec extends BodyCodec {
+
+        private final Supplier<Collection<Object>> factory;
+        private final BodyCodec element;
+
+        CollectionCodec(Supplier<Collection<Object>> factory, BodyCodec element) {
+            this.factory = factory;
+            this.element = element;
+        }
+
+        @Override
+        Object read(Json json) throws IOException {
+            if (json.nextIsNull()) {
+                return null;
+            }
+            json.consume('[');
+            Collection<Object> collection = factory.get();
+            for (boolean first = true; json.more(']', first); first = false) {
+                collection.add(element.read(json));
+            }
+            return collection;
+        }
+
+        @Override
+        Object text(String value) {
+            return values(List.of(value));
+        }
+
+        @Override
+        Object values(List<String> values) {
+            Collection<Object> collection = factory.get();
+            for (String value : values) {
+                collection.add(element.text(value));
+            }
+            return collection;
+        }
+
+        @Override
+        String name() {
+            return "array of " + element.name();
+        }
+    }
+
+    private static final class ArrayCodec extends BodyCodec {
+
+        private final Class<?> componentType;
+        private final CollectionCodec elements;
+
+        ArrayCodec(Class<?> componentType, BodyCodec element) {
+            this.componentType = componentType;
+            this.elements = new CollectionCodec(ArrayList::new, element);
+        }
+
+        @Override
+        Object read(Json json) throws IOException {
+            return toArray((Collection<?>) elements.read(json));
+        }
+
+        @Override
+        Object values(List<String> values) {
+            return toArray((Collection<?>) elements.values(values));
+        }
+
+        @Override
+        Object text(String value) {
+            return values(List.of(value));
+        }
+
+        private Object toArray(Collection<?> collection) {
+            if (collection == null) {
+                return null;
+            }
+            Object array = Array.newInstance(componentType, collection.size());
+            int i = 0;
+            for (Object element : collection) {
+                if (element == null && componentType.isPrimitive()) {
+                    throw new IllegalArgumentException("null in an array of " + componentType.getName());
+                }
+                Array.set(array, i++, element);
+            }
+            return array;
+        }
+
+        @Override
+        String name() {
+            return elements.name();
+        }
+    }
+
+    private static final class MapCodec extends BodyCodec {
+
+        private final BodyCodec value;
+
+        MapCodec(BodyCodec value) {
+            this.value = value;
+        }
+
+        @Override
+        Object read(Json json) throws IOException {
+            if (json.nextIsNull()) {
+                return null;
+            }
+            json.consume('{');
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (boolean first = true; json.more('}', first); first = false) {
+                String name = json.fieldName();
+                map.put(name, value.read(json));
+            }
+            return map;
+        }
+
+        @Override
+        String name() {
+            return "object";
+        }
+    }
+
+    /**
+     * Record or POJO. Records are built by their canonical constructor from an argument array,
+     * POJOs by their no-arg constructor and a setter per property.
+     */
+    private static final class ObjectCodec extends BodyCodec {
+
+        private static final MethodType SPREAD = MethodType.methodType(Object.class, Object[].class);
+        private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final Class<?> type;
+        private final Map<String, Property> properties;
+        private final MethodHandle constructor;
+        private final Object[] defaults;
+
+        private ObjectCodec(Class<?> type, Map<String, Property> properties, MethodHandle constructor, Object[] defaults) {
+            this.type = type;
+            this.properties = properties;
+            this.constructor = constructor;
+            this.defaults = defaults;
+        }
+
+        static ObjectCodec forRecord(Class<?> type) throws ReflectiveOperationException {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            RecordComponent[] components = type.getRecordComponents();
+            Class<?>[] parameterTypes = new Class<?>[components.length];
+            Object[] defaults = new Object[components.length];
+            Map<String, Property> properties = new HashMap<>();
+            for (int i = 0; i < components.length; i++) {
+                parameterTypes[i] = components[i].getType();
+                defaults[i] = defaultValue(parameterTypes[i]);
+                properties.put(components[i].getName(), new Property(i, of(components[i].getGenericType()), null, parameterTypes[i].isPrimitive()));
+            }
+            MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                .asSpreader(Object[].class, components.length)
+                .asType(SPREAD);
+            return new ObjectCodec(type, properties, constructor, defaults);
+        }
+
+        static ObjectCodec forPojo(Class<?> type) throws ReflectiveOperationException {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            MethodHandle constructor = lookup.findConstructor(type, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+            Map<String, Property> properties = new HashMap<>();
+            for (Method method : type.getMethods()) {
+                String name = method.getName();
+                if (name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1
+                    && !Modifier.isStatic(method.getModifiers())) {
+                    String property = Character.toLowerCase(name.charAt(3)) + name.substring(4);
+                    properties.put(property, new Property(-1, of(method.getGenericParameterTypes()[0]),
+                        lookup.unreflect(method).asType(SETTER), method.getParameterTypes()[0].isPrimitive()));
+                }
+            }
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isSynthetic() || properties.containsKey(field.getName())) {
+                        continue;
+                    }
+                    MethodHandle setter = MethodHandles.privateLookupIn(c, MethodHandles.lookup()).unreflectSetter(field);
+                    properties.put(field.getName(), new Property(-1, of(field.getGenericType()),
+                        setter.asType(SETTER), field.getType().isPrimitive()));
+                }
+            }
+            return new ObjectCodec(type, properties, constructor, null);
+        }
+
+        private static Object defaultValue(Class<?> type) {
+            return type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+        }
+
+        @Override
+        Object read(Json json) throws IOException {
+            if (json.nextIsNull()) {
+                return null;
+            }
+            json.consume('{');
+            Object[] arguments = defaults != null ? defaults.clone() : null;
+            Object instance = defaults == null ? newInstance() : null;
+            for (boolean first = true; json.more('}', first); first = false) {
+                Property property = properties.get(json.fieldName());
+                if (property == null) {
+                    json.value();
+                    continue;
+                }
+                set(property, property.codec.read(json), arguments, instance);
+            }
+            return arguments != null ? construct(arguments) : instance;
+        }
+
+        Object bind(Map<String, List<String>> params) {
+            Object[] arguments = defaults != null ? defaults.clone() : null;
+            Object instance = defaults == null ? newInstance() : null;
+            for (Map.Entry<String, List<String>> param : params.entrySet()) {
+                Property property = properties.get(param.getKey());
+                if (property != null) {
+                    set(property, property.codec.values(param.getValue()), arguments, instance);
+                }
+            }
+            return arguments != null ? construct(arguments) : instance;
+        }
+
+        private void set(Property property, Object value, Object[] arguments, Object instance) {
+            if (value == null && property.primitive) {
+                // A null for an int or boolean leaves the default
+                return;
+            }
+            if (arguments != null) {
+                arguments[property.index] = value;
+                return;
+            }
+            try {
+                property.setter.invokeExact(instance, value);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        private Object newInstance() {
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        private Object construct(Object[] arguments) {
+            try {
+                return (Object) constructor.invokeExact(arguments);
+            } catch (Throwable e) {
+                throw rethrow(e);
+            }
+        }
+
+        private static RuntimeException rethrow(Throwable e) {
+            if (e instanceof RuntimeException runtime) {
+                return runtime;
+            }
+            if (e instanceof Error error) {
+                throw error;
+            }
+            return new IllegalStateException(e);
+        }
+
+        @Override
+        String name() {
+            return type.getSimpleName();
+        }
+    }
+
+    private static final class Property {
+
+        final int index;
+        final BodyCodec codec;
+        final MethodHandle setter;
+        final boolean primitive;
+
+        Property(int index, BodyCodec codec, MethodHandle setter, boolean primitive) {
+            this.index = index;
+            this.codec = codec;
+            this.setter = setter;
+            this.primitive = primitive;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package spark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Pool of direct ByteBuffers in size classes (4KB, 16KB, 64KB, 256KB, 1MB) that response bodies
+ * are encoded and compressed into before Jetty writes them, so large bodies are neither allocated
+ * per request nor copied again from heap to direct memory on the way to the socket.
+ * <p>
+ * Each platform thread caches one 4KB and one 16KB buffer, 20KB per thread; larger buffers, and
+ * small ones beyond that, go to a shared stack per class, bounded so the stacks hold at most 4MB
+ * in all. Virtual threads use the shared stacks only, since they're too many and too short-lived
+ * to cache anything.
+ */
+public final class BufferPool {
+
+    private static final int MIN_SHIFT = 12;
+    private static final int CLASSES = 5;
+    /** Size classes cached per thread, the small ones only so each thread holds little */
+    private static final int CACHED_CLASSES = 2;
+    /** Shared slots per size class, fewer for the larger ones: 256KB + 256KB + 512KB + 1MB + 2MB */
+    private static final int[] SHARED_SLOTS = {64, 16, 8, 4, 2};
+
+    private final ThreadLocal<ByteBuffer[]> cached = ThreadLocal.withInitial(() -> new ByteBuffer[CACHED_CLASSES]);
+    private final AtomicReferenceArray<ByteBuffer>[] shared;
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong oversized = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    BufferPool() {
+        shared = (AtomicReferenceArray<ByteBuffer>[]) new AtomicReferenceArray<?>[CLASSES];
+        for (int i = 0; i < CLASSES; i++) {
+            shared[i] = new AtomicReferenceArray<>(SHARED_SLOTS[i]);
+        }
+    }
+
+    /**
+     * @return the capacity of the largest size class
+     */
+    public static int maxCapacity() {
+        return capacity(CLASSES - 1);
+    }
+
+    private static int capacity(int sizeClass) {
+        return 1 << (MIN_SHIFT + 2 * sizeClass);
+    }
+
+    private static int sizeClass(int capacity) {
+        for (int i = 0; i < CLASSES; i++) {
+            if (capacity <= capacity(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a cleared direct buffer of at least minCapacity bytes, or null if that's more than
+     *         maxCapacity(), in which case callers fall back to heap memory
+     */
+    ByteBuffer acquire(int minCapacity) {
+        int sizeClass = sizeClass(minCapacity);
+        if (sizeClass < 0) {
+            oversized.incrementAndGet();
+            return null;
+        }
+        acquired.incrementAndGet();
+        ByteBuffer buffer = null;
+        if (sizeClass < CACHED_CLASSES && !Thread.currentThread().isVirtual()) {
+            ByteBuffer[] local = cached.get();
+            buffer = local[sizeClass];
+            local[sizeClass] = null;
+        }
+        if (buffer == null) {
+            AtomicReferenceArray<ByteBuffer> slots = shared[sizeClass];
+            for (int i = 0; i < slots.length() && buffer == null; i++) {
+                ByteBuffer candidate = slots.get(i);
+                if (candidate != null && slots.compareAndSet(i, candidate, null)) {
+                    buffer = candidate;
+                }
+            }
+        }
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(capacity(sizeClass));
+        }
+        hits.incrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Returns a buffer from acquire() to the pool; it must not be used afterwards
+     */
+    void release(ByteBuffer buffer) {
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass < CACHED_CLASSES && !Thread.currentThread().isVirtual()) {
+            ByteBuffer[] local = cached.get();
+            if (local[sizeClass] == null) {
+                local[sizeClass] = buffer;
+                return;
+            }
+        }
+        AtomicReferenceArray<ByteBuffer> slots = shared[sizeClass];
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+        // Pool full, the buffer's memory is freed once it's collected
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * @return buffers handed out, pooled or newly allocated
+     */
+    public long acquired() {
+        return acquired.get();
+    }
+
+    /**
+     * @return buffers handed out from the pool rather than allocated
+     */
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return acquired.get() - hits.get();
+    }
+
+    /**
+     * @return share of acquired buffers that came from the pool, 0 before the first one
+     */
+    public double hitRate() {
+        long acquired = this.acquired.get();
+        return acquired == 0 ? 0 : (double) hits.get() / acquired;
+    }
+
+    /**
+     * @return requests for more than maxCapacity(), served from the heap instead
+     */
+    public long oversized() {
+        return oversized.get();
+    }
+
+    /**
+     * @return released buffers that didn't fit in the pool and were left to the garbage collector
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+}
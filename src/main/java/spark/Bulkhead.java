@@ -0,0 +1,281 @@
+package spark;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dedicated executor for a group of routes, so a slow dependency can only exhaust its own
+ * threads and never the shared Jetty pool.
+ *
+ * The Jetty thread hands the request to the bulkhead and returns; the response is completed
+ * asynchronously once the route finishes. At most maxConcurrent routes run at once and at most
+ * queueCapacity more wait. Beyond that the request fails fast with a BulkheadFullException,
+ * which goes through exception() like any other exception (503 unless a handler is registered).
+ */
+public class Bulkhead {
+
+    private static final String FAILURE = "spark.bulkhead.failure";
+
+    private final String name;
+    private final int capacity;
+    private final Executor executor;
+    private final Semaphore admission;
+    private final Semaphore running;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private Bulkhead(String name, int maxConcurrent, int queueCapacity, Executor executor, Semaphore running) {
+        if (maxConcurrent < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("Require maxConcurrent >= 1 and queueCapacity >= 0");
+        }
+        this.name = name;
+        this.capacity = maxConcurrent + queueCapacity;
+        this.executor = executor;
+        this.admission = new Semaphore(capacity);
+        this.running = running;
+    }
+
+    /**
+     * Bulkhead backed by a fixed pool of platform threads
+     *
+     * @param threads        threads running routes, i.e. the concurrency cap
+     * @param queueCapacity  requests that may wait for a thread before new ones are rejected
+     */
+    public static Bulkhead threads(String name, int threads, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), daemonThreads("bulkhead-" + name + "-"));
+        pool.allowCoreThreadTimeOut(true);
+        return new Bulkhead(name, threads, queueCapacity, pool, null);
+    }
+
+    /**
+     * Bulkhead running each request on its own virtual thread, capped at maxConcurrent permits.
+     * Suited to routes that mostly wait on I/O.
+     *
+     * @param maxConcurrent  routes allowed to run at once
+     * @param queueCapacity  requests that may wait for a permit before new ones are rejected
+     */
+    public static Bulkhead virtual(String name, int maxConcurrent, int queueCapacity) {
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("bulkhead-" + name + "-", 0).factory());
+        return new Bulkhead(name, maxConcurrent, queueCapacity, executor, new Semaphore(maxConcurrent));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Unbounded bulkhead on virtual threads, used for routes that have a timeout but no bulkhead
+     */
+    static Bulkhead unbounded(String name) {
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name(name + "-", 0).factory());
+        return new Bulkhead(name, Integer.MAX_VALUE, 0, executor, null);
+    }
+
+    /**
+     * Runs handler on this bulkhead and completes the response asynchronously
+     *
+     * @param timeoutNanos  deadline for the route, or 0 for none
+     * @throws BulkheadFullException if maxConcurrent routes are running and the queue is full
+     */
+    void dispatch(Context ctx, Handler handler, long timeoutNanos) {
+        if (!admission.tryAcquire()) {
+            rejected.incrementAndGet();
+            throw new BulkheadFullException(name);
+        }
+        Task task = new Task(ctx, handler);
+        if (timeoutNanos > 0) {
+            ctx.attribute(Deadlines.DEADLINE, System.nanoTime() + timeoutNanos);
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            rejected.incrementAndGet();
+            throw new BulkheadFullException(name);
+        }
+        if (timeoutNanos > 0) {
+            task.timer = Deadlines.schedule(task::expire, timeoutNanos);
+        }
+        ctx.future(() -> task.done);
+    }
+
+    /**
+     * One request on the bulkhead. Whichever of the route and the deadline finishes first
+     * completes the response; the other one's outcome is dropped. The route works on a
+     * DetachableContext, so once the deadline has answered it can no longer change the response.
+     */
+    private final class Task implements Runnable {
+
+        final Context ctx;
+        final DetachableContext routeCtx;
+        final Handler handler;
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final AtomicBoolean finished = new AtomicBoolean();
+        volatile Future<?> timer;
+        private Thread runner;
+        private boolean started;
+
+        Task(Context ctx, Handler handler) {
+            this.ctx = ctx;
+            this.routeCtx = new DetachableContext(ctx);
+            this.handler = handler;
+        }
+
+        @Override
+        public void run() {
+            Throwable failure = null;
+            try {
+                if (running != null) {
+                    running.acquire();
+                }
+                try {
+                    synchronized (this) {
+                        if (finished.get()) {
+                            return;
+                        }
+                        runner = Thread.currentThread();
+                        started = true;
+                    }
+                    active.incrementAndGet();
+                    try {
+                        handler.handle(routeCtx);
+                    } finally {
+                        active.decrementAndGet();
+                        synchronized (this) {
+                            runner = null;
+                        }
+                        // Don't leak an interrupt from expire() into the next task on this thread
+                        Thread.interrupted();
+                    }
+                } finally {
+                    if (running != null) {
+                        running.release();
+                    }
+                }
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                admission.release();
+                completed.incrementAndGet();
+            }
+            if (finished.compareAndSet(false, true)) {
+                Future<?> pending = timer;
+                if (pending != null) {
+                    pending.cancel(false);
+                }
+                complete(failure);
+            }
+        }
+
+        /**
+         * Deadline reached: detaches the route from the response, interrupts it
+         * and answers with DeadlineExceededException
+         */
+        void expire() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            routeCtx.detach();
+            boolean wasStarted;
+            synchronized (this) {
+                wasStarted = started;
+                if (runner != null) {
+                    runner.interrupt();
+                }
+            }
+            complete(new DeadlineExceededException(wasStarted));
+        }
+
+        private void complete(Throwable failure) {
+            if (failure instanceof Exception) {
+                // A failed future would skip the error and after handlers, so the exception is
+                // completed normally and rethrown by rethrowFailure() right after the route's task
+                ctx.attribute(FAILURE, failure);
+                done.complete(null);
+            } else if (failure != null) {
+                done.completeExceptionally(failure);
+            } else {
+                done.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Request task following the route's: passes an exception thrown on a bulkhead thread to the
+     * exception() handlers, so they and the error and after handlers run as for synchronous routes
+     */
+    static void rethrowFailure(Context ctx) {
+        Exception failure = ctx.attribute(FAILURE);
+        if (failure != null) {
+            ctx.attribute(FAILURE, null);
+            Bulkhead.<RuntimeException>rethrow(failure);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> void rethrow(Exception failure) throws E {
+        // Rethrown as is, so exception() handlers are matched on the route's own exception class
+        throw (E) failure;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return routes currently running on this bulkhead
+     */
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * @return requests admitted but still waiting for a thread or permit
+     */
+    public int queueDepth() {
+        return Math.max(0, capacity - admission.availablePermits() - active.get());
+    }
+
+    /**
+     * @return total requests rejected because the bulkhead was full
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return total requests that ran to completion, successfully or not
+     */
+    public long completed() {
+        return completed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead[" + name + ", active=" + active() + ", queued=" + queueDepth() + ", rejected=" + rejected() + "]";
+    }
+}
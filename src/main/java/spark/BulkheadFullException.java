@@ -0,0 +1,24 @@
+package spark;
+
+/**
+ * Thrown when a request arrives at a bulkhead whose threads and queue are all taken.
+ * Answered with 503 and Retry-After unless an exception() handler is registered for it.
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String bulkhead;
+
+    public BulkheadFullException(String bulkhead) {
+        super("Bulkhead '" + bulkhead + "' is full", null, false, false);
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * @return name of the bulkhead that rejected the request
+     */
+    public String bulkhead() {
+        return bulkhead;
+    }
+}
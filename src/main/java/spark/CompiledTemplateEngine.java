@@ -0,0 +1,162 @@
+package spark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base for template engines that compile a template once and render the compiled form per request.
+ * Subclasses implement compile() and render(template, model, out); templates are loaded by view name
+ * from a directory or the classpath and kept in a concurrent cache, so each one is parsed once.
+ * <p>
+ * For development, reloadOnChange(true) recompiles a template from a directory when its file's
+ * modification time changes, at the cost of one file stat per render.
+ *
+ * @param <T> the engine's compiled template type
+ */
+public abstract class CompiledTemplateEngine<T> extends TemplateEngine {
+
+    private final Path directory;
+    private final String classpathRoot;
+    private final Map<String, Compiled<T>> cache = new ConcurrentHashMap<>();
+    private final AtomicLong compilations = new AtomicLong();
+    private volatile boolean reloadOnChange;
+
+    /**
+     * Loads templates from files under directory, the view name being the relative path
+     */
+    protected CompiledTemplateEngine(Path directory) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.classpathRoot = null;
+    }
+
+    /**
+     * Loads templates from the classpath under classpathRoot, e.g. "templates"
+     */
+    protected CompiledTemplateEngine(String classpathRoot) {
+        this.directory = null;
+        this.classpathRoot = classpathRoot.endsWith("/") ? classpathRoot : classpathRoot + "/";
+    }
+
+    /**
+     * Recompiles templates whose file changed since they were compiled; for development,
+     * has no effect on classpath templates
+     */
+    public CompiledTemplateEngine<T> reloadOnChange(boolean reloadOnChange) {
+        this.reloadOnChange = reloadOnChange;
+        return this;
+    }
+
+    /**
+     * Parses a template's source into the form rendered per request
+     */
+    protected abstract T compile(String viewName, Reader source) throws IOException;
+
+    /**
+     * Renders a compiled template with model to out
+     */
+    protected abstract void render(T template, Object model, Writer out) throws IOException;
+
+    @Override
+    public String render(ModelAndView modelAndView) {
+        StringWriter out = new StringWriter();
+        try {
+            render(modelAndView, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void render(ModelAndView modelAndView, Writer out) throws IOException {
+        render(template(modelAndView.getViewName()), modelAndView.getModel(), out);
+    }
+
+    /**
+     * @return the compiled template for viewName, compiling it on first use
+     */
+    T template(String viewName) {
+        Compiled<T> compiled = cache.get(viewName);
+        if (compiled != null && (!reloadOnChange || directory == null || compiled.modified.equals(modified(viewName)))) {
+            return compiled.template;
+        }
+        // One thread compiles, concurrent renders of the same view wait for it
+        return cache.compute(viewName, (name, current) -> {
+            FileTime modified = directory != null ? modified(name) : null;
+            if (current != null && (!reloadOnChange || directory == null || current.modified.equals(modified))) {
+                return current;
+            }
+            return load(name, modified);
+        }).template;
+    }
+
+    private Compiled<T> load(String viewName, FileTime modified) {
+        try (Reader source = open(viewName)) {
+            T template = compile(viewName, source);
+            compilations.incrementAndGet();
+            return new Compiled<>(template, modified);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot compile template " + viewName, e);
+        }
+    }
+
+    private Reader open(String viewName) throws IOException {
+        InputStream in;
+        if (directory != null) {
+            in = Files.newInputStream(resolve(viewName));
+        } else {
+            in = Thread.currentThread().getContextClassLoader().getResourceAsStream(classpathRoot + viewName);
+            if (in == null) {
+                throw new NoSuchFileException(classpathRoot + viewName);
+            }
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    private FileTime modified(String viewName) {
+        try {
+            return Files.getLastModifiedTime(resolve(viewName));
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private Path resolve(String viewName) {
+        Path file = directory.resolve(viewName).normalize();
+        if (!file.startsWith(directory)) {
+            throw new IllegalArgumentException("Template outside of " + directory + ": " + viewName);
+        }
+        return file;
+    }
+
+    /**
+     * @return templates compiled so far, including recompilations after a change
+     */
+    public long compilations() {
+        return compilations.get();
+    }
+
+    private static final class Compiled<T> {
+
+        final T template;
+        final FileTime modified;
+
+        Compiled(T template, FileTime modified) {
+            this.template = template;
+            this.modified = modified;
+        }
+    }
+}
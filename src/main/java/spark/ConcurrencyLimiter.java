@@ -0,0 +1,149 @@
+package spark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive concurrency limit for a route (AIMD on a latency gradient).
+ *
+ * Latency is tracked as two moving averages: a short one over roughly the last 10 requests
+ * and a long-term baseline over roughly the last 1000. The limit grows by one while the short
+ * average stays within the tolerance factor of the baseline and the limit is actually being
+ * used, and shrinks multiplicatively once it rises past that, which is where requests start
+ * queueing. It shrinks at most once per 1000 requests, so the normal spread of latencies
+ * never adds up to a collapse. Requests over the limit are rejected instead of waiting for a thread.
+ */
+public class ConcurrencyLimiter {
+
+    private static final int WINDOW_SAMPLES = 1000;
+    private static final double SHORT_SMOOTHING = 0.1;
+    private static final double LONG_SMOOTHING = 1.0 / WINDOW_SAMPLES;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double latencyTolerance;
+    private final int retryAfterSeconds;
+
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Moving averages of latency in nanos, as double bits; 0 until the first sample
+    private final AtomicLong shortLatency = new AtomicLong();
+    private final AtomicLong longLatency = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+    private final AtomicLong lastBackoffSample = new AtomicLong(-WINDOW_SAMPLES);
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param initialLimit       concurrent requests allowed before any latency has been measured
+     * @param minLimit           the limit never shrinks below this
+     * @param maxLimit           the limit never grows above this
+     * @param backoffRatio       factor applied to the limit when latency degrades, e.g. 0.9
+     * @param latencyTolerance   how far the short-term average latency may rise above the baseline before backing off, e.g. 2.0
+     * @param retryAfterSeconds  value of the Retry-After header sent with rejections
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                              double backoffRatio, double latencyTolerance, int retryAfterSeconds) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Require 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyTolerance = latencyTolerance;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limit = new AtomicInteger(initialLimit);
+    }
+
+    /**
+     * Limiter starting at initialLimit with default backoff (0.9), tolerance (2x) and Retry-After (1s)
+     */
+    public ConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this(initialLimit, 1, maxLimit, 0.9, 2.0, 1);
+    }
+
+    /**
+     * Claims a slot for a request
+     *
+     * @return the number of requests in flight including this one, or -1 if the limit is reached
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                rejected.incrementAndGet();
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Releases a slot claimed by tryAcquire and feeds the request latency into the limit
+     *
+     * @param latencyNanos     how long the request took
+     * @param inFlightAtStart  the value returned by tryAcquire
+     */
+    public void release(long latencyNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+
+        long sample = samples.incrementAndGet();
+        double recent = smooth(shortLatency, latencyNanos, Math.max(SHORT_SMOOTHING, 1.0 / sample));
+        double baseline = Double.longBitsToDouble(longLatency.get());
+        boolean queueing = baseline > 0 && recent > baseline * latencyTolerance;
+        // Time spent queueing isn't the route's cost: the baseline only creeps towards it
+        smooth(longLatency, latencyNanos, queueing ? LONG_SMOOTHING : Math.max(LONG_SMOOTHING, 1.0 / sample));
+
+        int current = limit.get();
+        if (queueing) {
+            long lastBackoff = lastBackoffSample.get();
+            if (sample - lastBackoff >= WINDOW_SAMPLES && lastBackoffSample.compareAndSet(lastBackoff, sample)) {
+                limit.updateAndGet(value -> Math.max(minLimit, (int) (value * backoffRatio)));
+            }
+        } else if (inFlightAtStart * 2 >= current && current < maxLimit) {
+            // Only grow when the limit is actually being used, otherwise it would drift to max
+            limit.compareAndSet(current, current + 1);
+        }
+    }
+
+    /**
+     * Moves the average in bits towards sample by weight; the first samples weigh 1/n,
+     * so the average starts out as their plain mean
+     */
+    private static double smooth(AtomicLong bits, long sample, double weight) {
+        return Double.longBitsToDouble(bits.updateAndGet(previous -> {
+            double average = Double.longBitsToDouble(previous);
+            return Double.doubleToRawLongBits(average + weight * (sample - average));
+        }));
+    }
+
+    /**
+     * @return the current concurrency limit
+     */
+    public int limit() {
+        return limit.get();
+    }
+
+    /**
+     * @return requests currently holding a slot
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return total requests rejected because the limit was reached
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return seconds clients are told to wait before retrying a rejected request
+     */
+    public int retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
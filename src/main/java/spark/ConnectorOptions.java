@@ -0,0 +1,207 @@
+package spark;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.unixdomain.server.UnixDomainServerConnector;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+/**
+ * Jetty connector settings, e.g.
+ * connector(new ConnectorOptions().acceptors(2).acceptQueueSize(4096).reusePort(true))
+ *
+ * Defaults favour throughput under high connection rates:
+ * <ul>
+ *   <li>acceptors -1 and selectors -1: sized by Jetty from the CPU count (1-4 acceptors, cores/2 selectors)</li>
+ *   <li>acceptQueueSize 1024: connection bursts from a load balancer queue in the kernel instead of being
+ *       refused (the JDK default is 50; the kernel caps it at net.core.somaxconn)</li>
+ *   <li>idleTimeoutMillis 30000: keep-alive connections stay open long enough to be reused</li>
+ *   <li>inputBufferSize 8192 and outputBufferSize 32768: Jetty's defaults, large enough for typical headers
+ *       and to write most responses in one flush</li>
+ *   <li>tcpNoDelay true: small responses are sent immediately instead of waiting on Nagle's algorithm</li>
+ *   <li>reusePort false: set it to let several processes bind the same port and have the kernel balance them</li>
+ * </ul>
+ * HTTP/1.1 only and plain text unless http2(...) or secure(...) are set.
+ */
+public class ConnectorOptions {
+
+    private int acceptors = -1;
+    private int selectors = -1;
+    private int acceptQueueSize = 1024;
+    private int idleTimeoutMillis = 30000;
+    private int inputBufferSize = 8192;
+    private int outputBufferSize = 32768;
+    private boolean tcpNoDelay = true;
+    private boolean reusePort = false;
+    private Http2Options http2;
+    private String keystoreFile;
+    private String keystorePassword;
+
+    /**
+     * Threads accepting new connections, -1 to let Jetty choose
+     */
+    public ConnectorOptions acceptors(int acceptors) {
+        this.acceptors = acceptors;
+        return this;
+    }
+
+    /**
+     * Threads selecting on established connections, -1 to let Jetty choose
+     */
+    public ConnectorOptions selectors(int selectors) {
+        this.selectors = selectors;
+        return this;
+    }
+
+    /**
+     * Backlog of connections the kernel queues before they are accepted
+     */
+    public ConnectorOptions acceptQueueSize(int acceptQueueSize) {
+        this.acceptQueueSize = acceptQueueSize;
+        return this;
+    }
+
+    /**
+     * How long an idle connection is kept open
+     */
+    public ConnectorOptions idleTimeout(int idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    /**
+     * Size of the buffer requests are read into
+     */
+    public ConnectorOptions inputBufferSize(int inputBufferSize) {
+        this.inputBufferSize = inputBufferSize;
+        return this;
+    }
+
+    /**
+     * Size of the response buffer, responses that fit are written in one flush
+     */
+    public ConnectorOptions outputBufferSize(int outputBufferSize) {
+        this.outputBufferSize = outputBufferSize;
+        return this;
+    }
+
+    /**
+     * Sets TCP_NODELAY on accepted connections
+     */
+    public ConnectorOptions tcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    /**
+     * Sets SO_REUSEPORT on the listening socket
+     */
+    public ConnectorOptions reusePort(boolean reusePort) {
+        this.reusePort = reusePort;
+        return this;
+    }
+
+    /**
+     * Serves HTTP/2 next to HTTP/1.1: h2 via ALPN if the connector is secure, h2c otherwise
+     */
+    public ConnectorOptions http2(Http2Options http2) {
+        this.http2 = http2;
+        return this;
+    }
+
+    /**
+     * Serves HTTPS with the certificate in the given keystore (JKS or PKCS12)
+     */
+    public ConnectorOptions secure(String keystoreFile, String keystorePassword) {
+        this.keystoreFile = keystoreFile;
+        this.keystorePassword = keystorePassword;
+        return this;
+    }
+
+    void configure(HttpConfiguration httpConfiguration) {
+        httpConfiguration.setOutputBufferSize(outputBufferSize);
+    }
+
+    ServerConnector create(Server server, HttpConfiguration httpConfiguration, String host, int port) {
+        ServerConnector connector = new ServerConnector(server, acceptors, selectors,
+            connectionFactories(httpConfiguration));
+        connector.setHost(host);
+        connector.setPort(port);
+        connector.setAcceptQueueSize(acceptQueueSize);
+        connector.setIdleTimeout(idleTimeoutMillis);
+        connector.setAcceptedTcpNoDelay(tcpNoDelay);
+        connector.setReusePort(reusePort);
+        return connector;
+    }
+
+    /**
+     * Connector listening on a Unix domain socket, with the same protocols, buffers and backlog.
+     * TCP-only settings (host, port, TCP_NODELAY, SO_REUSEPORT) don't apply.
+     */
+    UnixDomainServerConnector createUnixDomain(Server server, HttpConfiguration httpConfiguration, Path path) {
+        UnixDomainServerConnector connector = new UnixDomainServerConnector(server, acceptors, selectors,
+            connectionFactories(httpConfiguration));
+        connector.setUnixDomainPath(path);
+        connector.setAcceptQueueSize(acceptQueueSize);
+        connector.setIdleTimeout(idleTimeoutMillis);
+        return connector;
+    }
+
+    /**
+     * Protocol stack of the connector, outermost first: [TLS, ALPN,] HTTP/1.1 and HTTP/2
+     */
+    private ConnectionFactory[] connectionFactories(HttpConfiguration httpConfiguration) {
+        List<ConnectionFactory> factories = new ArrayList<>();
+        if (keystoreFile != null) {
+            httpConfiguration = new HttpConfiguration(httpConfiguration);
+            httpConfiguration.addCustomizer(new SecureRequestCustomizer());
+        }
+        HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfiguration);
+        http1.setInputBufferSize(inputBufferSize);
+
+        if (keystoreFile == null) {
+            factories.add(http1);
+            if (http2 != null) {
+                factories.add(http2.configure(new HTTP2CServerConnectionFactory(httpConfiguration)));
+            }
+            return factories.toArray(new ConnectionFactory[0]);
+        }
+
+        SslContextFactory.Server ssl = new SslContextFactory.Server();
+        ssl.setKeyStorePath(keystoreFile);
+        ssl.setKeyStorePassword(keystorePassword);
+        if (http2 == null) {
+            factories.add(new SslConnectionFactory(ssl, http1.getProtocol()));
+            factories.add(http1);
+        } else {
+            // h2 requires TLS 1.2+ ciphers that aren't blacklisted by RFC 7540
+            ssl.setCipherComparator(HTTP2Cipher.COMPARATOR);
+            ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory("h2", http1.getProtocol());
+            alpn.setDefaultProtocol(http1.getProtocol());
+            factories.add(new SslConnectionFactory(ssl, alpn.getProtocol()));
+            factories.add(alpn);
+            factories.add(http2.configure(new HTTP2ServerConnectionFactory(httpConfiguration)));
+            factories.add(http1);
+        }
+        return factories.toArray(new ConnectionFactory[0]);
+    }
+
+    @Override
+    public String toString() {
+        return "acceptors=" + acceptors + ", selectors=" + selectors + ", acceptQueueSize=" + acceptQueueSize +
+            ", idleTimeout=" + idleTimeoutMillis + ", inputBufferSize=" + inputBufferSize +
+            ", outputBufferSize=" + outputBufferSize + ", tcpNoDelay=" + tcpNoDelay + ", reusePort=" + reusePort +
+            (keystoreFile != null ? ", secure" : "") + (http2 != null ? ", http2(" + http2 + ")" : "");
+    }
+}
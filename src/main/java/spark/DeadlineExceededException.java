@@ -0,0 +1,25 @@
+package spark;
+
+/**
+ * Thrown when a route doesn't finish before its timeout.
+ * Answered with 504, or 503 if the route never started because it was still queued,
+ * unless an exception() handler is registered for it.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean started;
+
+    public DeadlineExceededException(boolean started) {
+        super(started ? "Route timed out" : "Deadline expired before the route started", null, false, false);
+        this.started = started;
+    }
+
+    /**
+     * @return true if the route was running (and has been interrupted), false if it was still queued
+     */
+    public boolean started() {
+        return started;
+    }
+}
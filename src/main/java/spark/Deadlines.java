@@ -0,0 +1,52 @@
+package spark;
+
+import io.javalin.http.Context;
+import java.time.Duration;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request deadlines: the timer that fires route timeouts and the per-request deadline attribute
+ */
+final class Deadlines {
+
+    static final String DEADLINE = "spark.deadline";
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "spark-deadlines");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // Most timeouts are cancelled because the route finished in time
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private Deadlines() {
+    }
+
+    static Future<?> schedule(Runnable action, long delayNanos) {
+        return TIMER.schedule(action, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return nanos left before the request's deadline, or otherwise if it has none
+     */
+    static long remainingNanos(Context ctx, long otherwise) {
+        Long deadline = ctx.attribute(DEADLINE);
+        return deadline == null ? otherwise : Math.max(0, deadline - System.nanoTime());
+    }
+
+    /**
+     * @return time left before the request's deadline, or null if it has none
+     */
+    static Duration remaining(Context ctx) {
+        Long deadline = ctx.attribute(DEADLINE);
+        if (deadline == null) {
+            return null;
+        }
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+}
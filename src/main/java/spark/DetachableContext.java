@@ -0,0 +1,420 @@
+package spark;
+
+import io.javalin.config.Key;
+import io.javalin.http.Context;
+import io.javalin.http.HandlerType;
+import io.javalin.http.HttpStatus;
+import io.javalin.json.JsonMapper;
+import io.javalin.plugin.ContextPlugin;
+import io.javalin.security.RouteRole;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The context a route on a bulkhead sees. Once detached, when the route's deadline has answered
+ * the request, everything the still running route does to the response is dropped, so a late
+ * route can't touch a response that is already being written or belongs to the next request.
+ * Detaching waits for a mutation in progress; writes to an output stream are checked per call.
+ */
+final class DetachableContext implements Context {
+
+    private final Context ctx;
+    private final HttpServletResponse res;
+    private volatile boolean detached;
+
+    DetachableContext(Context ctx) {
+        this.ctx = ctx;
+        this.res = new Response(ctx.res());
+    }
+
+    /**
+     * Drops every later change to the response
+     */
+    synchronized void detach() {
+        detached = true;
+    }
+
+    @Override
+    public HttpServletRequest req() {
+        return ctx.req();
+    }
+
+    @Override
+    public HttpServletResponse res() {
+        return res;
+    }
+
+    @Override
+    public HandlerType handlerType() {
+        return ctx.handlerType();
+    }
+
+    @Override
+    public String matchedPath() {
+        return ctx.matchedPath();
+    }
+
+    @Override
+    public String endpointHandlerPath() {
+        return ctx.endpointHandlerPath();
+    }
+
+    @Override
+    public <T> T appData(Key<T> key) {
+        return ctx.appData(key);
+    }
+
+    @Override
+    public JsonMapper jsonMapper() {
+        return ctx.jsonMapper();
+    }
+
+    @Override
+    public <T> T with(Class<? extends ContextPlugin<?, T>> plugin) {
+        return ctx.with(plugin);
+    }
+
+    @Override
+    public boolean strictContentTypes() {
+        return ctx.strictContentTypes();
+    }
+
+    @Override
+    public String pathParam(String key) {
+        return ctx.pathParam(key);
+    }
+
+    @Override
+    public Map<String, String> pathParamMap() {
+        return ctx.pathParamMap();
+    }
+
+    @Override
+    public ServletOutputStream outputStream() {
+        synchronized (this) {
+            return detached ? new Output(OutputStream.nullOutputStream()) : new Output(ctx.outputStream());
+        }
+    }
+
+    @Override
+    public synchronized Context minSizeForCompression(int minSizeForCompression) {
+        if (!detached) {
+            ctx.minSizeForCompression(minSizeForCompression);
+        }
+        return this;
+    }
+
+    @Override
+    public Context result(InputStream resultStream) {
+        synchronized (this) {
+            if (!detached) {
+                ctx.result(resultStream);
+                return this;
+            }
+        }
+        // Pooled bodies give their buffer back on close
+        close(resultStream);
+        return this;
+    }
+
+    @Override
+    public InputStream resultInputStream() {
+        return ctx.resultInputStream();
+    }
+
+    @Override
+    public synchronized void future(Supplier<? extends CompletableFuture<?>> future) {
+        if (!detached) {
+            ctx.future(future);
+        }
+    }
+
+    @Override
+    public synchronized void redirect(String location, HttpStatus status) {
+        if (!detached) {
+            ctx.redirect(location, status);
+        }
+    }
+
+    @Override
+    public synchronized void writeJsonStream(Stream<?> stream) {
+        if (!detached) {
+            ctx.writeJsonStream(stream);
+        }
+    }
+
+    @Override
+    public synchronized Context skipRemainingHandlers() {
+        if (!detached) {
+            ctx.skipRemainingHandlers();
+        }
+        return this;
+    }
+
+    @Override
+    public Set<RouteRole> routeRoles() {
+        return ctx.routeRoles();
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException ignored) {
+            // Nothing was going to read it
+        }
+    }
+
+    /**
+     * Servlet response whose setters do nothing once detached
+     */
+    private final class Response extends HttpServletResponseWrapper {
+
+        Response(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.setStatus(sc);
+                }
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.setHeader(name, value);
+                }
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.addHeader(name, value);
+                }
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.setIntHeader(name, value);
+                }
+            }
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.addIntHeader(name, value);
+                }
+            }
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.setDateHeader(name, date);
+                }
+            }
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.addDateHeader(name, date);
+                }
+            }
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.addCookie(cookie);
+                }
+            }
+        }
+
+        @Override
+        public void setContentType(String type) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.setContentType(type);
+                }
+            }
+        }
+
+        @Override
+        public void setCharacterEncoding(String charset) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.setCharacterEncoding(charset);
+                }
+            }
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.setContentLength(len);
+                }
+            }
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.setContentLengthLong(len);
+                }
+            }
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.sendError(sc, msg);
+                }
+            }
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.sendError(sc);
+                }
+            }
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.sendRedirect(location);
+                }
+            }
+        }
+
+        @Override
+        public void reset() {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.reset();
+                }
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            synchronized (DetachableContext.this) {
+                if (!detached) {
+                    super.resetBuffer();
+                }
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (!detached) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            synchronized (DetachableContext.this) {
+                return new Output(detached ? OutputStream.nullOutputStream() : super.getOutputStream());
+            }
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            String charset = getCharacterEncoding();
+            return new PrintWriter(new OutputStreamWriter(getOutputStream(),
+                charset != null ? charset : StandardCharsets.ISO_8859_1.name()));
+        }
+    }
+
+    /**
+     * Output stream whose writes go nowhere once detached
+     */
+    private final class Output extends ServletOutputStream {
+
+        private final OutputStream out;
+
+        Output(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!detached) {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!detached) {
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!detached) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!detached) {
+                out.close();
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return !(out instanceof ServletOutputStream servlet) || servlet.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            if (out instanceof ServletOutputStream servlet) {
+                servlet.setWriteListener(writeListener);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package spark;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.function.Function;
+
+/**
+ * Conditional GET support for a route: sets ETag and answers If-None-Match with 304.
+ *
+ * With a version function the tag is known before the route runs, so a matching request
+ * is answered without rendering the body at all. Otherwise the rendered body is hashed
+ * with XXH64, which still saves the transfer but not the render.
+ */
+final class EtagHandler {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private final Function<Request, String> versionFunction;
+
+    /**
+     * @param versionFunction cheap version token for the requested resource, or null to hash bodies
+     */
+    EtagHandler(Function<Request, String> versionFunction) {
+        this.versionFunction = versionFunction;
+    }
+
+    void handle(Context ctx, Handler handler) throws Exception {
+        if (versionFunction != null) {
+            String version = versionFunction.apply(new Request(ctx));
+            if (version != null) {
+                String etag = "\"" + version + "\"";
+                ctx.header("ETag", etag);
+                if (matches(ctx.header("If-None-Match"), etag)) {
+                    ctx.status(304);
+                    ctx.result(new byte[0]);
+                    return;
+                }
+                handler.handle(ctx);
+                return;
+            }
+        }
+
+        handler.handle(ctx);
+        if (ctx.statusCode() != 200) {
+            return;
+        }
+        byte[] body;
+        try (InputStream result = ctx.resultInputStream()) {
+            if (result == null) {
+                return;
+            }
+            body = result.readAllBytes();
+        }
+        String etag = "\"" + Long.toHexString(xxh64(body)) + "\"";
+        ctx.header("ETag", etag);
+        if (matches(ctx.header("If-None-Match"), etag)) {
+            ctx.status(304);
+            ctx.result(new byte[0]);
+        } else {
+            ctx.result(body);
+        }
+    }
+
+    /**
+     * Weak comparison of an If-None-Match header against a tag, as RFC 9110 requires for GET
+     */
+    static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * XXH64 with seed 0
+     */
+    static long xxh64(byte[] input) {
+        int length = input.length;
+        int offset = 0;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = PRIME1 + PRIME2;
+            long v2 = PRIME2;
+            long v3 = 0;
+            long v4 = -PRIME1;
+            int limit = length - 32;
+            do {
+                v1 = round(v1, (long) LONGS.get(input, offset));
+                v2 = round(v2, (long) LONGS.get(input, offset + 8));
+                v3 = round(v3, (long) LONGS.get(input, offset + 16));
+                v4 = round(v4, (long) LONGS.get(input, offset + 24));
+                offset += 32;
+            } while (offset <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+
+        hash += length;
+
+        while (offset + 8 <= length) {
+            hash ^= round(0, (long) LONGS.get(input, offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            offset += 8;
+        }
+        if (offset + 4 <= length) {
+            hash ^= ((int) INTS.get(input, offset) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+        while (offset < length) {
+            hash ^= (input[offset] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            offset++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+}
@@ -0,0 +1,224 @@
+package spark;
+
+import io.javalin.http.Context;
+import jakarta.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Server-Sent Events endpoint, returned by sse(path, handler).
+ *
+ * Events published here go to every connected client and into a bounded replay ring,
+ * so a client reconnecting with Last-Event-ID receives what it missed (as long as it
+ * is still in the ring). Clients hold no thread while idle: one timer per stream
+ * checks every client each flush interval and writes its batched events, or a heartbeat
+ * comment when it has been quiet for the heartbeat interval, on a virtual thread.
+ * The stream stops with the service: its timer is cancelled and every client is closed.
+ */
+public class EventStream {
+
+    static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "spark-sse");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        // No timer thread lingers once every stream has stopped
+        TIMER.setRemoveOnCancelPolicy(true);
+        TIMER.setKeepAliveTime(1, TimeUnit.SECONDS);
+        TIMER.allowCoreThreadTimeOut(true);
+    }
+
+    private static final ExecutorService WRITERS = Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("spark-sse-writer-", 0).factory());
+
+    private final SseHandler handler;
+    private final Set<SseEmitter> clients = ConcurrentHashMap.newKeySet();
+    private final AtomicLong published = new AtomicLong();
+
+    private volatile long heartbeatNanos = TimeUnit.SECONDS.toNanos(15);
+    private volatile int maxQueued = 1024;
+    private ScheduledFuture<?> ticker;
+    private boolean stopped;
+
+    // Replay ring of encoded events, slot = id % length; guarded by this
+    private byte[][] ring = new byte[1024][];
+    private long lastId;
+
+    EventStream(SseHandler handler) {
+        this.handler = handler;
+        flushInterval(Duration.ofMillis(50));
+    }
+
+    /**
+     * How often queued events are written, default 50ms. Events published within one
+     * interval reach each client in a single write.
+     */
+    public synchronized EventStream flushInterval(Duration interval) {
+        if (ticker != null) {
+            ticker.cancel(false);
+        }
+        if (stopped) {
+            return this;
+        }
+        long nanos = interval.toNanos();
+        ticker = TIMER.scheduleAtFixedRate(this::tick, nanos, nanos, TimeUnit.NANOSECONDS);
+        return this;
+    }
+
+    /**
+     * How long a client may go without a write before it is sent a heartbeat comment, default 15s.
+     * Heartbeats keep proxies from timing out the connection and detect dead clients.
+     */
+    public EventStream heartbeatInterval(Duration interval) {
+        this.heartbeatNanos = interval.toNanos();
+        return this;
+    }
+
+    /**
+     * Number of recent events kept for Last-Event-ID replay, default 1024
+     */
+    public synchronized EventStream replayCapacity(int capacity) {
+        byte[][] resized = new byte[capacity][];
+        for (long id = Math.max(1, lastId - capacity + 1); id <= lastId; id++) {
+            resized[(int) (id % capacity)] = ring[(int) (id % ring.length)];
+        }
+        ring = resized;
+        return this;
+    }
+
+    /**
+     * Events a client may have waiting before it is disconnected as too slow, default 1024
+     */
+    public EventStream maxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+        return this;
+    }
+
+    /**
+     * Sends an unnamed event to every connected client
+     */
+    public void publish(String data) {
+        publish(null, data);
+    }
+
+    /**
+     * Sends a named event to every connected client and keeps it for replay
+     */
+    public synchronized void publish(String event, String data) {
+        long id = ++lastId;
+        byte[] encoded = encode(Long.toString(id), event, data);
+        ring[(int) (id % ring.length)] = encoded;
+        published.incrementAndGet();
+        for (SseEmitter client : clients) {
+            client.enqueue(encoded);
+        }
+    }
+
+    /**
+     * @return clients currently connected
+     */
+    public int clients() {
+        return clients.size();
+    }
+
+    /**
+     * @return events published to all clients
+     */
+    public long published() {
+        return published.get();
+    }
+
+    void handle(Context ctx) throws Exception {
+        HttpServletResponse res = ctx.res();
+        res.setStatus(200);
+        res.setCharacterEncoding("UTF-8");
+        res.setContentType("text/event-stream");
+        res.setHeader("Cache-Control", "no-cache");
+        res.setHeader("X-Accel-Buffering", "no");
+
+        String lastEventId = ctx.header("Last-Event-ID");
+        SseEmitter emitter = new SseEmitter(res.getOutputStream(), lastEventId, maxQueued);
+        connect(emitter, lastEventId);
+        emitter.onClose(() -> clients.remove(emitter));
+        handler.handle(new Request(ctx), emitter);
+
+        // Flush headers and any replayed events right away
+        if (emitter.needsFlush(System.nanoTime(), 0)) {
+            emitter.flush();
+        }
+        ctx.future(emitter::closed);
+    }
+
+    /**
+     * Cancels the timer and ends every client's stream, called when the service stops
+     */
+    void stop() {
+        synchronized (this) {
+            stopped = true;
+            if (ticker != null) {
+                ticker.cancel(false);
+            }
+        }
+        for (SseEmitter client : clients) {
+            client.close();
+        }
+    }
+
+    /**
+     * Queues the events the client missed and registers it, atomically with respect to publish
+     */
+    private synchronized void connect(SseEmitter emitter, String lastEventId) {
+        long from = lastId + 1;
+        if (lastEventId != null) {
+            try {
+                from = Long.parseLong(lastEventId.trim()) + 1;
+            } catch (NumberFormatException e) {
+                // Not one of our ids, start from now
+            }
+        }
+        for (long id = Math.max(from, Math.max(1, lastId - ring.length + 1)); id <= lastId; id++) {
+            emitter.enqueue(ring[(int) (id % ring.length)]);
+        }
+        clients.add(emitter);
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        for (SseEmitter client : clients) {
+            if (client.needsFlush(now, heartbeatNanos)) {
+                WRITERS.execute(client::flush);
+            }
+        }
+    }
+
+    /**
+     * Encodes an event in the text/event-stream format, one data line per line of data
+     */
+    static byte[] encode(String id, String event, String data) {
+        StringBuilder encoded = new StringBuilder(data.length() + 32);
+        if (id != null) {
+            encoded.append("id: ").append(id).append('\n');
+        }
+        if (event != null) {
+            encoded.append("event: ").append(event).append('\n');
+        }
+        int start = 0;
+        int end;
+        while ((end = data.indexOf('\n', start)) >= 0) {
+            encoded.append("data: ").append(data, start, end).append('\n');
+            start = end + 1;
+        }
+        encoded.append("data: ").append(data, start, data.length()).append("\n\n");
+        return encoded.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,65 @@
+package spark;
+
+import io.javalin.http.Context;
+
+/**
+ * Thrown by halt() to stop a request from a filter or route. Carries no stack trace, and
+ * halts without a body reuse one preallocated instance per status code, so rejecting
+ * requests this way costs no more than returning from the handler.
+ * <p>
+ * The route and filter wrappers catch it and apply its status and body directly; after
+ * filters still run, the remaining before filters and the route don't.
+ */
+public class HaltException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String HALTED = "spark.halted";
+
+    private static final HaltException[] BY_STATUS = new HaltException[600];
+
+    static {
+        for (int status = 100; status < BY_STATUS.length; status++) {
+            BY_STATUS[status] = new HaltException(status, null);
+        }
+    }
+
+    private final int statusCode;
+    private final String body;
+
+    HaltException(int statusCode, String body) {
+        super(null, null, false, false);
+        this.statusCode = statusCode;
+        this.body = body;
+    }
+
+    static HaltException of(int statusCode, String body) {
+        if (body == null && statusCode >= 100 && statusCode < BY_STATUS.length) {
+            return BY_STATUS[statusCode];
+        }
+        return new HaltException(statusCode, body);
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return the body to send, or null to keep whatever was set before halting
+     */
+    public String body() {
+        return body;
+    }
+
+    void apply(Context ctx) {
+        ctx.attribute(HALTED, Boolean.TRUE);
+        ctx.status(statusCode);
+        if (body != null) {
+            ctx.result(body);
+        }
+    }
+
+    static boolean halted(Context ctx) {
+        return ctx.attribute(HALTED) != null;
+    }
+}
@@ -0,0 +1,56 @@
+package spark;
+
+import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
+
+/**
+ * HTTP/2 settings for a connector, e.g.
+ * connector(new ConnectorOptions().http2(new Http2Options().maxConcurrentStreams(512)))
+ *
+ * Served as h2 when the connector is secure(...) and as h2c (prior knowledge or
+ * Upgrade from HTTP/1.1) otherwise. HTTP/1.1 clients keep working in both cases.
+ * Defaults suit clients multiplexing many small requests on one connection:
+ * 256 concurrent streams, a 512KiB window per stream and 4MiB per connection.
+ */
+public class Http2Options {
+
+    private int maxConcurrentStreams = 256;
+    private int initialStreamWindow = 512 * 1024;
+    private int initialSessionWindow = 4 * 1024 * 1024;
+
+    /**
+     * Streams a client may have open on one connection at once
+     */
+    public Http2Options maxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        return this;
+    }
+
+    /**
+     * Flow-control window of each stream: request body bytes a client may send before the route reads them
+     */
+    public Http2Options initialStreamWindow(int bytes) {
+        this.initialStreamWindow = bytes;
+        return this;
+    }
+
+    /**
+     * Flow-control window of the whole connection, shared by all its streams
+     */
+    public Http2Options initialSessionWindow(int bytes) {
+        this.initialSessionWindow = bytes;
+        return this;
+    }
+
+    <T extends AbstractHTTP2ServerConnectionFactory> T configure(T factory) {
+        factory.setMaxConcurrentStreams(maxConcurrentStreams);
+        factory.setInitialStreamRecvWindow(initialStreamWindow);
+        factory.setInitialSessionRecvWindow(initialSessionWindow);
+        return factory;
+    }
+
+    @Override
+    public String toString() {
+        return "maxConcurrentStreams=" + maxConcurrentStreams + ", initialStreamWindow=" + initialStreamWindow +
+            ", initialSessionWindow=" + initialSessionWindow;
+    }
+}
@@ -0,0 +1,133 @@
+package spark;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Honors the Idempotency-Key header on a route.
+ *
+ * The first response for a key is stored and replayed to every retry. Duplicates that
+ * arrive while the first request is still running wait for it instead of executing
+ * the route again, until their deadline (or 30s) passes, which gets 409 since the first request
+ * is still in progress. Keys are scoped to the route and the client's principal, and a key
+ * reused for a different request gets 422. Requests without the header, server errors
+ * (5xx) and exceptions are not stored, so they can be retried.
+ */
+final class IdempotencyHandler {
+
+    static final String HEADER = "Idempotency-Key";
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final String scope;
+    private final IdempotencyStore store;
+    private final Function<Request, String> principal;
+    private final ConcurrentHashMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param scope      prefix keeping keys of different routes apart, e.g. "POST /orders"
+     * @param principal  keeps keys of different clients apart
+     */
+    IdempotencyHandler(String scope, IdempotencyStore store, Function<Request, String> principal) {
+        this.scope = scope;
+        this.store = store;
+        this.principal = principal;
+    }
+
+    void handle(Context ctx, Handler handler) throws Exception {
+        String header = ctx.header(HEADER);
+        if (header == null || header.isEmpty()) {
+            handler.handle(ctx);
+            return;
+        }
+        String key = scope + " " + principal.apply(new Request(ctx)) + " " + header;
+        String fingerprint = fingerprint(ctx);
+
+        StoredResponse stored = store.get(key);
+        if (stored != null) {
+            replay(ctx, stored, fingerprint);
+            return;
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            StoredResponse first;
+            try {
+                first = await(ctx, running);
+            } catch (TimeoutException e) {
+                ctx.status(409);
+                ctx.result("A request with this Idempotency-Key is still in progress");
+                return;
+            }
+            if (first != null) {
+                replay(ctx, first, fingerprint);
+            } else {
+                // The first attempt failed without a storable response, so this one may retry
+                handler.handle(ctx);
+            }
+            return;
+        }
+
+        try {
+            stored = store.get(key);
+            if (stored != null) {
+                mine.complete(stored);
+                replay(ctx, stored, fingerprint);
+                return;
+            }
+            Map<String, List<String>> before = StoredResponse.headers(ctx);
+            handler.handle(ctx);
+            StoredResponse response = null;
+            if (ctx.statusCode() < 500) {
+                response = StoredResponse.capture(ctx, before, fingerprint);
+                store.put(key, response);
+            }
+            mine.complete(response);
+        } finally {
+            // Releases the waiters whatever the route threw, Errors included
+            mine.complete(null);
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static void replay(Context ctx, StoredResponse response, String fingerprint) {
+        if (response.fingerprint() != null && !response.fingerprint().equals(fingerprint)) {
+            ctx.status(422);
+            ctx.result("Idempotency-Key was already used for a different request");
+            return;
+        }
+        response.writeTo(ctx);
+        ctx.header("Idempotent-Replayed", "true");
+    }
+
+    /**
+     * Hashes what makes the request a retry of the same operation: its target and body
+     */
+    private static String fingerprint(Context ctx) {
+        String query = ctx.queryString();
+        String target = query == null ? ctx.path() : ctx.path() + "?" + query;
+        return Long.toHexString(EtagHandler.xxh64(target.getBytes(StandardCharsets.UTF_8)))
+            + Long.toHexString(EtagHandler.xxh64(ctx.bodyAsBytes()));
+    }
+
+    /**
+     * Waits for the first request until this one's deadline, or MAX_WAIT without one
+     */
+    private static StoredResponse await(Context ctx, CompletableFuture<StoredResponse> running) throws Exception {
+        try {
+            return running.get(Deadlines.remainingNanos(ctx, MAX_WAIT_NANOS), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package spark;
+
+/**
+ * Storage for responses of idempotent POST/PUT requests, keyed by Idempotency-Key.
+ * Implementations decide retention; the bridge only stores and replays.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * @return the response stored for key, or null if there is none (or it expired)
+     */
+    StoredResponse get(String key);
+
+    /**
+     * Stores the first response produced for key
+     */
+    void put(String key, StoredResponse response);
+
+}
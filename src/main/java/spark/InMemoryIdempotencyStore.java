@@ -0,0 +1,86 @@
+package spark;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Default IdempotencyStore: a bounded in-memory map with a time to live.
+ * When full, the oldest keys are dropped first. Expired responses stay until
+ * their key is stored again or dropped, so each key is queued exactly once.
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param ttlMillis   how long a stored response is replayed for
+     * @param maxEntries  upper bound on stored responses
+     */
+    public InMemoryIdempotencyStore(long ttlMillis, int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Store keeping up to 10000 responses for 24 hours
+     */
+    public InMemoryIdempotencyStore() {
+        this(TimeUnit.HOURS.toMillis(24), 10_000);
+    }
+
+    @Override
+    public StoredResponse get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.storedNanos > ttlNanos) {
+            return null;
+        }
+        return entry.response;
+    }
+
+    @Override
+    public void put(String key, StoredResponse response) {
+        // A key is queued exactly while it is mapped
+        if (entries.put(key, new Entry(response, System.nanoTime())) == null) {
+            insertionOrder.add(key);
+        }
+        while (entries.size() > maxEntries) {
+            String oldest = insertionOrder.poll();
+            if (oldest == null) {
+                break;
+            }
+            entries.remove(oldest);
+        }
+    }
+
+    /**
+     * @return number of stored responses, including expired ones not yet dropped
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return keys queued for eviction, one per stored response
+     */
+    int queuedKeys() {
+        return insertionOrder.size();
+    }
+
+    private static final class Entry {
+
+        final StoredResponse response;
+        final long storedNanos;
+
+        Entry(StoredResponse response, long storedNanos) {
+            this.response = response;
+            this.storedNanos = storedNanos;
+        }
+    }
+}
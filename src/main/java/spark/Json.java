@@ -0,0 +1,360 @@
+package spark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JSON reader and writer for the bridge's own payloads, so it needs no JSON library.
+ * Reads objects as LinkedHashMap, arrays as ArrayList, numbers as Long or Double;
+ * input is consumed from a Reader one character at a time, never buffered whole.
+ * Binders read token by token instead (peek, more, fieldName, ...) to build their
+ * objects without an intermediate tree. Nesting is capped at MAX_DEPTH, so a body of
+ * brackets is rejected rather than overflowing the stack.
+ */
+final class Json {
+
+    static final int MAX_DEPTH = 256;
+
+    private final Reader in;
+    private int next;
+    private int depth;
+
+    Json(Reader in) throws IOException {
+        this.in = in;
+        this.next = in.read();
+    }
+
+    /**
+     * Reads one JSON value
+     *
+     * @throws IllegalArgumentException if the input isn't valid JSON
+     */
+    static Object parse(Reader in) throws IOException {
+        Json json = new Json(in);
+        Object value = json.value();
+        json.end();
+        return value;
+    }
+
+    Object value() throws IOException {
+        skipWhitespace();
+        switch (next) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            case 't':
+                literal("true");
+                return Boolean.TRUE;
+            case 'f':
+                literal("false");
+                return Boolean.FALSE;
+            case 'n':
+                literal("null");
+                return null;
+            default:
+                if (next == '-' || (next >= '0' && next <= '9')) {
+                    return number();
+                }
+                throw error(next == -1 ? "Unexpected end of input" : "Unexpected character '" + (char) next + "'");
+        }
+    }
+
+    private Map<String, Object> object() throws IOException {
+        Map<String, Object> object = new LinkedHashMap<>();
+        read();
+        enter();
+        skipWhitespace();
+        if (next == '}') {
+            read();
+            depth--;
+            return object;
+        }
+        while (true) {
+            skipWhitespace();
+            if (next != '"') {
+                throw error("Expected field name");
+            }
+            String name = string();
+            skipWhitespace();
+            expect(':');
+            object.put(name, value());
+            skipWhitespace();
+            if (next == ',') {
+                read();
+            } else {
+                expect('}');
+                depth--;
+                return object;
+            }
+        }
+    }
+
+    private List<Object> array() throws IOException {
+        List<Object> array = new ArrayList<>();
+        read();
+        enter();
+        skipWhitespace();
+        if (next == ']') {
+            read();
+            depth--;
+            return array;
+        }
+        while (true) {
+            array.add(value());
+            skipWhitespace();
+            if (next == ',') {
+                read();
+            } else {
+                expect(']');
+                depth--;
+                return array;
+            }
+        }
+    }
+
+    String string() throws IOException {
+        read();
+        StringBuilder string = new StringBuilder();
+        while (next != '"') {
+            if (next == -1) {
+                throw error("Unterminated string");
+            }
+            if (next == '\\') {
+                read();
+                switch (next) {
+                    case 'b' -> string.append('\b');
+                    case 'f' -> string.append('\f');
+                    case 'n' -> string.append('\n');
+                    case 'r' -> string.append('\r');
+                    case 't' -> string.append('\t');
+                    case 'u' -> {
+                        char[] hex = new char[4];
+                        for (int i = 0; i < 4; i++) {
+                            read();
+                            hex[i] = (char) next;
+                        }
+                        try {
+                            string.append((char) Integer.parseInt(new String(hex), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                    }
+                    case '"', '\\', '/' -> string.append((char) next);
+                    default -> throw error("Invalid escape");
+                }
+            } else {
+                string.append((char) next);
+            }
+            read();
+        }
+        read();
+        return string.toString();
+    }
+
+    private Number number() throws IOException {
+        String number = numberText();
+        try {
+            if (number.length() < 19 && number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+                return Long.parseLong(number);
+            }
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw error("Invalid number " + number);
+        }
+    }
+
+    /**
+     * Reads a number token as written, for binders that parse it exactly (e.g. BigDecimal)
+     */
+    String numberText() throws IOException {
+        skipWhitespace();
+        StringBuilder number = new StringBuilder();
+        while (next == '-' || next == '+' || next == '.' || next == 'e' || next == 'E' || (next >= '0' && next <= '9')) {
+            number.append((char) next);
+            read();
+        }
+        if (number.length() == 0) {
+            throw error("Expected a number");
+        }
+        return number.toString();
+    }
+
+    /**
+     * @return the next non-whitespace character without consuming it, -1 at the end
+     */
+    int peek() throws IOException {
+        skipWhitespace();
+        return next;
+    }
+
+    /**
+     * Consumes c, after any whitespace; an opening bracket counts towards MAX_DEPTH until
+     * more() reaches its closing bracket
+     */
+    void consume(char c) throws IOException {
+        skipWhitespace();
+        expect(c);
+        if (c == '{' || c == '[') {
+            enter();
+        }
+    }
+
+    /**
+     * Steps through the elements of an array or the fields of an object whose opening bracket
+     * was consumed: consumes the separating comma, or the closing bracket at the end
+     *
+     * @param first whether no element has been read yet
+     * @return whether another element follows
+     */
+    boolean more(char close, boolean first) throws IOException {
+        skipWhitespace();
+        if (next == close) {
+            read();
+            depth--;
+            return false;
+        }
+        if (!first) {
+            expect(',');
+        }
+        return true;
+    }
+
+    /**
+     * Reads a field name and its colon
+     */
+    String fieldName() throws IOException {
+        skipWhitespace();
+        if (next != '"') {
+            throw error("Expected field name");
+        }
+        String name = string();
+        consume(':');
+        return name;
+    }
+
+    /**
+     * Reads null, consuming it, if that's what comes next
+     */
+    boolean nextIsNull() throws IOException {
+        if (peek() == 'n') {
+            literal("null");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks nothing but whitespace is left
+     */
+    void end() throws IOException {
+        skipWhitespace();
+        if (next != -1) {
+            throw error("Unexpected trailing input");
+        }
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw error("Nested deeper than " + MAX_DEPTH);
+        }
+    }
+
+    private void literal(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (next != literal.charAt(i)) {
+                throw error("Expected " + literal);
+            }
+            read();
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        if (next != c) {
+            throw error("Expected '" + c + "'");
+        }
+        read();
+    }
+
+    private void skipWhitespace() throws IOException {
+        while (next == ' ' || next == '\t' || next == '\n' || next == '\r') {
+            read();
+        }
+    }
+
+    private void read() throws IOException {
+        next = in.read();
+    }
+
+    IllegalArgumentException error(String message) {
+        return new IllegalArgumentException("Invalid JSON: " + message);
+    }
+
+    /**
+     * Appends value as JSON: maps, iterables, strings, numbers, booleans and null
+     */
+    static StringBuilder write(Object value, StringBuilder out) {
+        if (value == null) {
+            out.append("null");
+        } else if (value instanceof String string) {
+            quote(string, out);
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else if (value instanceof Map<?, ?> map) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                quote(String.valueOf(entry.getKey()), out);
+                out.append(':');
+                write(entry.getValue(), out);
+            }
+            out.append('}');
+        } else if (value instanceof Iterable<?> iterable) {
+            out.append('[');
+            boolean first = true;
+            for (Object element : iterable) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                write(element, out);
+            }
+            out.append(']');
+        } else {
+            quote(value.toString(), out);
+        }
+        return out;
+    }
+
+    static void quote(String string, StringBuilder out) {
+        out.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,146 @@
+package spark;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Async context of an in-process request: the dispatch completes when complete() is called,
+ * and the async timeout is fired from the deadline timer like the container would.
+ */
+class LocalAsyncContext implements AsyncContext {
+
+    private final ServletRequest request;
+    private final ServletResponse response;
+    private final List<AsyncListener> listeners = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<Void> completed = new CompletableFuture<>();
+    private long timeoutMillis;
+    private Future<?> timeout;
+
+    LocalAsyncContext(ServletRequest request, ServletResponse response) {
+        this.request = request;
+        this.response = response;
+    }
+
+    /**
+     * @return completes once the request has finished asynchronously
+     */
+    CompletableFuture<Void> completion() {
+        return completed;
+    }
+
+    boolean isCompleted() {
+        return completed.isDone();
+    }
+
+    @Override
+    public void complete() {
+        if (completed.isDone()) {
+            return;
+        }
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        AsyncEvent event = new AsyncEvent(this, request, response);
+        for (AsyncListener listener : listeners) {
+            try {
+                listener.onComplete(event);
+            } catch (IOException e) {
+                // Listeners can't affect an in-memory response
+            }
+        }
+        completed.complete(null);
+    }
+
+    @Override
+    public void setTimeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        if (timeoutMillis > 0) {
+            timeout = Deadlines.schedule(this::expire, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+        }
+    }
+
+    private void expire() {
+        AsyncEvent event = new AsyncEvent(this, request, response);
+        for (AsyncListener listener : listeners) {
+            try {
+                listener.onTimeout(event);
+            } catch (IOException e) {
+                // Listeners can't affect an in-memory response
+            }
+        }
+        complete();
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeoutMillis;
+    }
+
+    @Override
+    public void addListener(AsyncListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void addListener(AsyncListener listener, ServletRequest request, ServletResponse response) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public <T extends AsyncListener> T createListener(Class<T> listenerClass) throws ServletException {
+        try {
+            return listenerClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new ServletException(e);
+        }
+    }
+
+    @Override
+    public ServletRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public ServletResponse getResponse() {
+        return response;
+    }
+
+    @Override
+    public boolean hasOriginalRequestAndResponse() {
+        return true;
+    }
+
+    @Override
+    public void start(Runnable runnable) {
+        Thread.startVirtualThread(runnable);
+    }
+
+    @Override
+    public void dispatch() {
+        throw new UnsupportedOperationException("Async dispatch is not supported in-process");
+    }
+
+    @Override
+    public void dispatch(String path) {
+        dispatch();
+    }
+
+    @Override
+    public void dispatch(ServletContext context, String path) {
+        dispatch();
+    }
+}
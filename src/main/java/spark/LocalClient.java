@@ -0,0 +1,68 @@
+package spark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Calls a service's routes in memory, without a socket or HTTP encoding, e.g.
+ * <pre>
+ * LocalResponse response = Spark.localClient().get("/hello/world");
+ * </pre>
+ * Requests go through the same pipeline as requests arriving on a connection: rate limits,
+ * before filters, route wrappers (bulkheads, timeouts, caches), after filters and the
+ * exception() and not-found handlers, in the same order. Useful for calls between components
+ * in one JVM and for tests and benchmarks of handler cost. Each client keeps one in-memory
+ * session across its requests, as a browser keeps its session cookie; multipart bodies need
+ * the container and are not available. A service with port(-1) and no unix socket never
+ * starts a listener and can only be called this way.
+ */
+public class LocalClient {
+
+    private static final String REMOTE_ADDR = "127.0.0.1";
+
+    private final Service service;
+    private final LocalSession.Holder session = new LocalSession.Holder();
+
+    LocalClient(Service service) {
+        this.service = service;
+    }
+
+    public LocalResponse get(String path) {
+        return request("GET", path, Map.of(), null);
+    }
+
+    public LocalResponse post(String path, String body) {
+        return request("POST", path, Map.of(), body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Dispatches a request and waits for its response
+     *
+     * @param path path with optional query string, e.g. "/users?limit=10"
+     * @param body request body, or null for none
+     */
+    public LocalResponse request(String method, String path, Map<String, String> headers, byte[] body) {
+        try {
+            return requestAsync(method, path, headers, body).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Dispatches a request on the calling thread; the response completes when the route does,
+     * later than this returns for routes running on a bulkhead
+     */
+    public CompletableFuture<LocalResponse> requestAsync(String method, String path, Map<String, String> headers, byte[] body) {
+        Map<String, List<String>> multiHeaders = new HashMap<>(headers.size());
+        headers.forEach((name, value) -> multiHeaders.put(name, List.of(value)));
+        return service.dispatch(method, path, multiHeaders, body, REMOTE_ADDR, session).thenApply(LocalResponse::new);
+    }
+}
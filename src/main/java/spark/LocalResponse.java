@@ -0,0 +1,57 @@
+package spark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response to a request dispatched in-process by LocalClient
+ */
+public class LocalResponse {
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+
+    LocalResponse(LocalServletResponse response) {
+        this.status = response.getStatus();
+        this.headers = Collections.unmodifiableMap(response.headers());
+        this.body = response.body();
+    }
+
+    public int status() {
+        return status;
+    }
+
+    /**
+     * @return the first value of the header, or null; name is case-insensitive
+     */
+    public String header(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * @return all headers, names case-insensitive
+     */
+    public Map<String, List<String>> headers() {
+        return headers;
+    }
+
+    public byte[] body() {
+        return body;
+    }
+
+    /**
+     * @return the body decoded as UTF-8
+     */
+    public String bodyAsString() {
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "LocalResponse[" + status + ", " + body.length + " bytes]";
+    }
+}
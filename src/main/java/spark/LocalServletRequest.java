@@ -0,0 +1,576 @@
+package spark;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpUpgradeHandler;
+import jakarta.servlet.http.Part;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory servlet request for dispatching through the route table without a connection.
+ * Carries what the routes read (method, path, query, headers, body, attributes) and the
+ * session of whoever dispatched it; multipart and authentication need the real container
+ * and are not available.
+ */
+class LocalServletRequest implements HttpServletRequest {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final String method;
+    private final String requestUri;
+    private final String queryString;
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final byte[] body;
+    private final String remoteAddr;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final Sessions sessions;
+    private String characterEncoding;
+    private ServletInputStream input;
+    private HttpServletResponse response;
+    private LocalAsyncContext asyncContext;
+
+    /**
+     * @param path       path with optional query string, e.g. "/users?limit=10"
+     * @param remoteAddr client address the routes see, e.g. the batch request's
+     * @param sessions   where getSession() finds the session, e.g. the batch request's
+     */
+    LocalServletRequest(String method, String path, Map<String, List<String>> headers, byte[] body, String remoteAddr,
+                        Sessions sessions) {
+        this.method = method.toUpperCase(Locale.ROOT);
+        int query = path.indexOf('?');
+        this.requestUri = query < 0 ? path : path.substring(0, query);
+        this.queryString = query < 0 ? null : path.substring(query + 1);
+        if (headers != null) {
+            headers.forEach((name, values) -> this.headers.put(name, new ArrayList<>(values)));
+        }
+        this.body = body != null ? body : EMPTY;
+        this.remoteAddr = remoteAddr;
+        this.sessions = sessions;
+        if (!this.headers.containsKey("Host")) {
+            this.headers.put("Host", List.of("localhost"));
+        }
+        if (this.body.length > 0) {
+            this.headers.put("Content-Length", List.of(Integer.toString(this.body.length)));
+        }
+    }
+
+    /**
+     * Where an in-process request finds its HttpSession
+     */
+    interface Sessions {
+
+        HttpSession getSession(boolean create);
+
+        /**
+         * @return the new id
+         * @throws IllegalStateException if there is no session
+         */
+        String changeSessionId();
+
+        /**
+         * The sessions of a request that arrived on a connection, e.g. a batch's for its sub-requests
+         */
+        static Sessions of(HttpServletRequest request) {
+            return new Sessions() {
+                @Override
+                public HttpSession getSession(boolean create) {
+                    return request.getSession(create);
+                }
+
+                @Override
+                public String changeSessionId() {
+                    return request.changeSessionId();
+                }
+            };
+        }
+    }
+
+    /**
+     * Pairs the request with the response it is dispatched with, for startAsync()
+     */
+    void response(HttpServletResponse response) {
+        this.response = response;
+    }
+
+    /**
+     * @return the async context if the request went async, else null
+     */
+    LocalAsyncContext asyncContextOrNull() {
+        return asyncContext;
+    }
+
+    // Request line and headers
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return requestUri;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        return new StringBuffer(getScheme()).append("://").append(getServerName()).append(requestUri);
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getContextPath() {
+        return "";
+    }
+
+    @Override
+    public String getServletPath() {
+        return requestUri;
+    }
+
+    @Override
+    public String getPathInfo() {
+        return null;
+    }
+
+    @Override
+    public String getPathTranslated() {
+        return null;
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public String getScheme() {
+        return "http";
+    }
+
+    @Override
+    public boolean isSecure() {
+        return false;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        return Collections.enumeration(headers.getOrDefault(name, List.of()));
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(headers.keySet());
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value == null ? -1 : Integer.parseInt(value);
+    }
+
+    @Override
+    public Cookie[] getCookies() {
+        String header = getHeader("Cookie");
+        if (header == null) {
+            return null;
+        }
+        List<Cookie> cookies = new ArrayList<>();
+        for (String pair : header.split(";")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                cookies.add(new Cookie(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim()));
+            }
+        }
+        return cookies.toArray(new Cookie[0]);
+    }
+
+    // Body
+
+    @Override
+    public String getCharacterEncoding() {
+        if (characterEncoding != null) {
+            return characterEncoding;
+        }
+        String contentType = getContentType();
+        int charset = contentType == null ? -1 : contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        return charset < 0 ? null : contentType.substring(charset + 8).split(";")[0].trim();
+    }
+
+    @Override
+    public void setCharacterEncoding(String encoding) {
+        this.characterEncoding = encoding;
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        if (input == null) {
+            input = newInputStream();
+        }
+        return input;
+    }
+
+    private ServletInputStream newInputStream() {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                return in.read(buffer, offset, length);
+            }
+
+            @Override
+            public int available() {
+                return in.available();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener listener) {
+                throw new UnsupportedOperationException("Blocking reads only");
+            }
+        };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = getParameterMap().get(name);
+        return values == null ? null : values[0];
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(getParameterMap().keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return getParameterMap().get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        // Query string only, form bodies are parsed by Javalin from the body itself
+        Map<String, List<String>> parameters = new HashMap<>();
+        if (queryString != null) {
+            for (String pair : queryString.split("&")) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+                parameters.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+            }
+        }
+        Map<String, String[]> map = new HashMap<>();
+        parameters.forEach((name, values) -> map.put(name, values.toArray(new String[0])));
+        return map;
+    }
+
+    @Override
+    public Collection<Part> getParts() {
+        throw new UnsupportedOperationException("Multipart requests are not supported in-process");
+    }
+
+    @Override
+    public Part getPart(String name) {
+        throw new UnsupportedOperationException("Multipart requests are not supported in-process");
+    }
+
+    // Attributes
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    // Addresses
+
+    @Override
+    public String getRemoteAddr() {
+        return remoteAddr;
+    }
+
+    @Override
+    public String getRemoteHost() {
+        return remoteAddr;
+    }
+
+    @Override
+    public int getRemotePort() {
+        return 0;
+    }
+
+    @Override
+    public String getServerName() {
+        String host = getHeader("Host");
+        int colon = host.lastIndexOf(':');
+        return colon < 0 ? host : host.substring(0, colon);
+    }
+
+    @Override
+    public int getServerPort() {
+        String host = getHeader("Host");
+        int colon = host.lastIndexOf(':');
+        return colon < 0 ? 80 : Integer.parseInt(host.substring(colon + 1));
+    }
+
+    @Override
+    public String getLocalName() {
+        return "localhost";
+    }
+
+    @Override
+    public String getLocalAddr() {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public int getLocalPort() {
+        return 0;
+    }
+
+    @Override
+    public Locale getLocale() {
+        return Locale.getDefault();
+    }
+
+    @Override
+    public Enumeration<Locale> getLocales() {
+        return Collections.enumeration(List.of(Locale.getDefault()));
+    }
+
+    // Async, completed through LocalAsyncContext
+
+    @Override
+    public AsyncContext startAsync() {
+        return startAsync(this, response);
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest request, ServletResponse response) {
+        if (asyncContext != null) {
+            throw new IllegalStateException("Async already started");
+        }
+        asyncContext = new LocalAsyncContext(request, response);
+        return asyncContext;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return asyncContext != null && !asyncContext.isCompleted();
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        return true;
+    }
+
+    @Override
+    public AsyncContext getAsyncContext() {
+        if (asyncContext == null) {
+            throw new IllegalStateException("Async not started");
+        }
+        return asyncContext;
+    }
+
+    @Override
+    public DispatcherType getDispatcherType() {
+        return DispatcherType.REQUEST;
+    }
+
+    // Sessions, from whoever dispatched the request
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        return sessions.getSession(create);
+    }
+
+    @Override
+    public HttpSession getSession() {
+        return getSession(true);
+    }
+
+    @Override
+    public String changeSessionId() {
+        return sessions.changeSessionId();
+    }
+
+    @Override
+    public String getRequestedSessionId() {
+        return null;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdValid() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromCookie() {
+        return false;
+    }
+
+    @Override
+    public boolean isRequestedSessionIdFromURL() {
+        return false;
+    }
+
+    @Override
+    @Deprecated
+    public boolean isRequestedSessionIdFromUrl() {
+        return false;
+    }
+
+    // Container features with no in-process equivalent
+
+    @Override
+    public String getAuthType() {
+        return null;
+    }
+
+    @Override
+    public String getRemoteUser() {
+        return null;
+    }
+
+    @Override
+    public boolean isUserInRole(String role) {
+        return false;
+    }
+
+    @Override
+    public Principal getUserPrincipal() {
+        return null;
+    }
+
+    @Override
+    public boolean authenticate(HttpServletResponse response) {
+        return false;
+    }
+
+    @Override
+    public void login(String username, String password) {
+        throw new UnsupportedOperationException("Authentication is not available in-process");
+    }
+
+    @Override
+    public void logout() {
+    }
+
+    @Override
+    public <T extends HttpUpgradeHandler> T upgrade(Class<T> handlerClass) {
+        throw new UnsupportedOperationException("Upgrades are not available in-process");
+    }
+
+    @Override
+    public RequestDispatcher getRequestDispatcher(String path) {
+        return null;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return null;
+    }
+
+    @Override
+    @Deprecated
+    public String getRealPath(String path) {
+        return null;
+    }
+}
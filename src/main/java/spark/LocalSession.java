@@ -0,0 +1,178 @@
+package spark;
+
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.http.HttpSession;
+import jakarta.servlet.http.HttpSessionContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory HttpSession of a LocalClient, kept for as long as the client until it is
+ * invalidated or left inactive past its max inactive interval
+ */
+class LocalSession implements HttpSession {
+
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final long creationTime = System.currentTimeMillis();
+    private volatile String id = UUID.randomUUID().toString();
+    private volatile long lastAccessedTime = creationTime;
+    private volatile int maxInactiveInterval;
+    private volatile boolean isNew = true;
+    private volatile boolean invalid;
+
+    /**
+     * One session at a time, replaced once invalidated or expired, as a cookie jar would
+     */
+    static final class Holder implements LocalServletRequest.Sessions {
+
+        private LocalSession session;
+
+        @Override
+        public synchronized HttpSession getSession(boolean create) {
+            if (session != null && !session.valid()) {
+                session = null;
+            }
+            if (session == null) {
+                if (!create) {
+                    return null;
+                }
+                session = new LocalSession();
+                return session;
+            }
+            session.access();
+            return session;
+        }
+
+        @Override
+        public synchronized String changeSessionId() {
+            if (getSession(false) == null) {
+                throw new IllegalStateException("No session");
+            }
+            session.id = UUID.randomUUID().toString();
+            return session.id;
+        }
+    }
+
+    private boolean valid() {
+        return !invalid && (maxInactiveInterval <= 0
+            || System.currentTimeMillis() - lastAccessedTime < maxInactiveInterval * 1000L);
+    }
+
+    private void access() {
+        lastAccessedTime = System.currentTimeMillis();
+        isNew = false;
+    }
+
+    private void checkValid() {
+        if (invalid) {
+            throw new IllegalStateException("Session invalidated");
+        }
+    }
+
+    @Override
+    public long getCreationTime() {
+        checkValid();
+        return creationTime;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public long getLastAccessedTime() {
+        checkValid();
+        return lastAccessedTime;
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return null;
+    }
+
+    @Override
+    public void setMaxInactiveInterval(int interval) {
+        maxInactiveInterval = interval;
+    }
+
+    @Override
+    public int getMaxInactiveInterval() {
+        return maxInactiveInterval;
+    }
+
+    @Override
+    @Deprecated
+    public HttpSessionContext getSessionContext() {
+        return null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        checkValid();
+        return attributes.get(name);
+    }
+
+    @Override
+    @Deprecated
+    public Object getValue(String name) {
+        return getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        checkValid();
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    @Deprecated
+    public String[] getValueNames() {
+        checkValid();
+        return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        checkValid();
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    @Deprecated
+    public void putValue(String name, Object value) {
+        setAttribute(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        checkValid();
+        attributes.remove(name);
+    }
+
+    @Override
+    @Deprecated
+    public void removeValue(String name) {
+        removeAttribute(name);
+    }
+
+    @Override
+    public void invalidate() {
+        checkValid();
+        invalid = true;
+        attributes.clear();
+    }
+
+    @Override
+    public boolean isNew() {
+        checkValid();
+        return isNew;
+    }
+}
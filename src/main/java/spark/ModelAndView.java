@@ -0,0 +1,23 @@
+package spark;
+
+/**
+ * Model and view name returned by a TemplateViewRoute, rendered by a TemplateEngine
+ */
+public class ModelAndView {
+
+    private final Object model;
+    private final String viewName;
+
+    public ModelAndView(Object model, String viewName) {
+        this.model = model;
+        this.viewName = viewName;
+    }
+
+    public Object getModel() {
+        return model;
+    }
+
+    public String getViewName() {
+        return viewName;
+    }
+}
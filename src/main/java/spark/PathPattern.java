@@ -0,0 +1,66 @@
+package spark;
+
+/**
+ * Matches request paths against Spark-style route patterns without allocating.
+ * Supports literal segments, :param segments (any single segment) and * (any single
+ * segment, or everything below when it is the last segment, so "/*" matches all paths).
+ */
+final class PathPattern {
+
+    private final String pattern;
+    private final String[] segments;
+    private final boolean[] wildcard;
+
+    private PathPattern(String pattern) {
+        this.pattern = pattern;
+        String trimmed = pattern.replaceAll("^/+|/+$", "");
+        this.segments = trimmed.isEmpty() ? new String[0] : trimmed.split("/+");
+        this.wildcard = new boolean[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            wildcard[i] = segments[i].equals("*") || segments[i].startsWith(":");
+        }
+    }
+
+    static PathPattern compile(String pattern) {
+        return new PathPattern(pattern);
+    }
+
+    /**
+     * @return true if the request path matches this pattern
+     */
+    boolean matches(String path) {
+        int length = path.length();
+        int pos = 0;
+        for (int i = 0; i < segments.length; i++) {
+            while (pos < length && path.charAt(pos) == '/') {
+                pos++;
+            }
+            if (i == segments.length - 1 && segments[i].equals("*")) {
+                return true;
+            }
+            int end = path.indexOf('/', pos);
+            if (end < 0) {
+                end = length;
+            }
+            if (pos == end) {
+                return false;
+            }
+            if (!wildcard[i]) {
+                String segment = segments[i];
+                if (end - pos != segment.length() || !path.regionMatches(pos, segment, 0, segment.length())) {
+                    return false;
+                }
+            }
+            pos = end;
+        }
+        while (pos < length && path.charAt(pos) == '/') {
+            pos++;
+        }
+        return pos == length;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
@@ -0,0 +1,127 @@
+package spark;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Template engine without dependencies: {{name}} is replaced by the HTML-escaped model value,
+ * {{{name}}} by the raw value, and dotted names (e.g. {{user.name}}) look up nested maps.
+ * The model must be a Map. Templates compile to a list of literal and placeholder parts,
+ * so rendering is a single pass of writes with no parsing.
+ */
+public class PlaceholderTemplateEngine extends CompiledTemplateEngine<List<Object>> {
+
+    /**
+     * Loads templates from files under directory
+     */
+    public PlaceholderTemplateEngine(Path directory) {
+        super(directory);
+    }
+
+    /**
+     * Loads templates from the classpath under classpathRoot, e.g. "templates"
+     */
+    public PlaceholderTemplateEngine(String classpathRoot) {
+        super(classpathRoot);
+    }
+
+    @Override
+    protected List<Object> compile(String viewName, Reader source) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = source.read(buffer)) >= 0) {
+            builder.append(buffer, 0, read);
+        }
+        String text = builder.toString();
+
+        List<Object> parts = new ArrayList<>();
+        int position = 0;
+        int open;
+        while ((open = text.indexOf("{{", position)) >= 0) {
+            boolean raw = text.startsWith("{{{", open);
+            String closing = raw ? "}}}" : "}}";
+            int close = text.indexOf(closing, open);
+            if (close < 0) {
+                throw new IOException("Unclosed placeholder in " + viewName + " at " + open);
+            }
+            if (open > position) {
+                parts.add(text.substring(position, open));
+            }
+            String name = text.substring(open + closing.length(), close).trim();
+            parts.add(new Placeholder(name.split("\\."), raw));
+            position = close + closing.length();
+        }
+        if (position < text.length()) {
+            parts.add(text.substring(position));
+        }
+        return List.copyOf(parts);
+    }
+
+    @Override
+    protected void render(List<Object> template, Object model, Writer out) throws IOException {
+        for (Object part : template) {
+            if (part instanceof String literal) {
+                out.write(literal);
+            } else {
+                Placeholder placeholder = (Placeholder) part;
+                Object value = placeholder.lookup(model);
+                if (value == null) {
+                    continue;
+                }
+                if (placeholder.raw) {
+                    out.write(value.toString());
+                } else {
+                    escape(value.toString(), out);
+                }
+            }
+        }
+    }
+
+    private static void escape(String value, Writer out) throws IOException {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String entity = switch (value.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#39;";
+                default -> null;
+            };
+            if (entity != null) {
+                out.write(value, start, i - start);
+                out.write(entity);
+                start = i + 1;
+            }
+        }
+        out.write(value, start, value.length() - start);
+    }
+
+    private static final class Placeholder {
+
+        final String[] path;
+        final boolean raw;
+
+        Placeholder(String[] path, boolean raw) {
+            this.path = path;
+            this.raw = raw;
+        }
+
+        Object lookup(Object model) {
+            Object value = model;
+            for (String key : path) {
+                if (!(value instanceof Map<?, ?> map)) {
+                    return null;
+                }
+                value = map.get(key);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package spark;
+
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Compressor;
+import io.javalin.compression.GzipCompressor;
+import io.javalin.http.Context;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * Response body encoded into a pooled direct buffer. Routes set it as the result instead of
+ * a String, so the body isn't copied to a heap byte[]; filters, caches and ETags can still read it
+ * as a stream. As the last step of a request, write() hands the buffer to Jetty, gzipping it
+ * into another pooled buffer when Javalin would have compressed it, and the buffers go back to the pool.
+ */
+final class PooledBody extends InputStream {
+
+    /** Shorter bodies are cheaper to encode the usual way */
+    static final int MIN_LENGTH = 1024;
+
+    private static final int CHUNK = 4096;
+    // Marker result once the body is written: stateless, so sharing it across requests is safe
+    private static final InputStream WRITTEN = new InputStream() {
+        @Override
+        public int read() {
+            return -1;
+        }
+    };
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final BufferPool pool;
+    private ByteBuffer buffer;
+    private int mark;
+
+    private PooledBody(BufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Sets body as ctx's result, in a pooled buffer if it's long enough and fits one
+     */
+    static void result(Context ctx, String body, BufferPool pool) {
+        if (pool != null && body.length() >= MIN_LENGTH) {
+            PooledBody pooled = encode(pool, body, ctx.responseCharset());
+            if (pooled != null) {
+                ctx.result(pooled);
+                return;
+            }
+        }
+        ctx.result(body);
+    }
+
+    /**
+     * @return body encoded in a pooled buffer, or null if it doesn't fit the largest one
+     */
+    static PooledBody encode(BufferPool pool, String body, Charset charset) {
+        Scratch scratch = scratch();
+        CharsetEncoder encoder = scratch.encoder(charset);
+        int length = body.length();
+        ByteBuffer buffer = pool.acquire((int) Math.min(BufferPool.maxCapacity(), (long) (length * encoder.averageBytesPerChar()) + 1));
+        if (buffer == null) {
+            return null;
+        }
+        CharBuffer in = CharBuffer.wrap(scratch.chars);
+        ByteBuffer out = ByteBuffer.wrap(scratch.bytes);
+        int start = 0;
+        do {
+            int end = Math.min(length, start + CHUNK);
+            if (end < length && Character.isHighSurrogate(body.charAt(end - 1))) {
+                // Keep surrogate pairs in one chunk
+                end--;
+            }
+            body.getChars(start, end, scratch.chars, 0);
+            in.clear().limit(end - start);
+            out.clear();
+            encoder.encode(in, out, end == length);
+            if (end == length) {
+                encoder.flush(out);
+            }
+            buffer = append(pool, buffer, out.flip());
+            if (buffer == null) {
+                return null;
+            }
+            start = end;
+        } while (start < length);
+        return new PooledBody(pool, buffer.flip());
+    }
+
+    private static ByteBuffer append(BufferPool pool, ByteBuffer buffer, ByteBuffer bytes) {
+        if (buffer.remaining() < bytes.remaining()) {
+            ByteBuffer larger = pool.acquire(buffer.capacity() + 1);
+            if (larger == null || larger.capacity() - buffer.position() < bytes.remaining()) {
+                pool.release(buffer);
+                if (larger != null) {
+                    pool.release(larger);
+                }
+                return null;
+            }
+            larger.put(buffer.flip());
+            pool.release(buffer);
+            buffer = larger;
+        }
+        return buffer.put(bytes);
+    }
+
+    /**
+     * Writes ctx's result to Jetty if it's a pooled body Javalin would send as is or gzipped;
+     * anything else (HEAD, 304, ETags, brotli, ...) is left to Javalin
+     */
+    static void write(Context ctx, CompressionStrategy compression) throws IOException {
+        if (!(ctx.resultInputStream() instanceof PooledBody body) || body.buffer == null) {
+            return;
+        }
+        HttpServletResponse res = ctx.res();
+        int status = res.getStatus();
+        if (res.isCommitted() || "HEAD".equals(ctx.req().getMethod()) || res.containsHeader("ETag")
+                || status < 200 || status == 204 || status == 304) {
+            return;
+        }
+        ByteBuffer content = body.buffer.duplicate();
+        GzipCompressor gzip = null;
+        if (!res.containsHeader("Content-Encoding") && content.remaining() >= compression.getDefaultMinSizeForCompression()
+                && compressible(compression, res.getContentType())) {
+            // Same choice as Javalin's CompressedOutputStream: the first compressor the client accepts
+            String accepted = ctx.header("Accept-Encoding");
+            Compressor compressor = accepted == null ? null : compression.getCompressors().stream()
+                .filter(candidate -> accepted.toLowerCase().contains(candidate.encoding().toLowerCase()))
+                .findFirst().orElse(null);
+            if (compressor != null && !(compressor instanceof GzipCompressor)) {
+                return;
+            }
+            gzip = (GzipCompressor) compressor;
+        }
+
+        ServletOutputStream out = res.getOutputStream();
+        if (gzip == null) {
+            res.setContentLength(content.remaining());
+            write(out, content);
+        } else {
+            res.setHeader("Content-Encoding", gzip.encoding());
+            gzip(body.pool, content, gzip.getLevel(), res, out);
+        }
+        // Releases the buffer, Javalin has nothing left to write
+        ctx.result(WRITTEN);
+    }
+
+    private static boolean compressible(CompressionStrategy compression, String contentType) {
+        if (contentType == null || compression.getAllowedMimeTypes().contains(contentType)) {
+            return true;
+        }
+        String type = contentType.toLowerCase();
+        return compression.getExcludedMimeTypes().stream().noneMatch(excluded -> type.contains(excluded.toLowerCase()));
+    }
+
+    private static void gzip(BufferPool pool, ByteBuffer content, int level, HttpServletResponse res, OutputStream out) throws IOException {
+        int length = content.remaining();
+        long bound = (long) length + (length >> 12) + (length >> 14) + (length >> 25) + 13 + GZIP_HEADER.length + 8;
+        ByteBuffer output = pool.acquire((int) Math.min(bound, BufferPool.maxCapacity()));
+        Scratch scratch = scratch();
+        Deflater deflater = scratch.deflater(level);
+        CRC32 crc = scratch.crc;
+        try {
+            crc.reset();
+            crc.update(content.duplicate());
+            output.put(GZIP_HEADER);
+            deflater.setInput(content);
+            deflater.finish();
+            boolean flushed = false;
+            while (!deflater.finished()) {
+                deflater.deflate(output);
+                if (!output.hasRemaining()) {
+                    write(out, output.flip());
+                    output.clear();
+                    flushed = true;
+                }
+            }
+            if (output.remaining() < 8) {
+                write(out, output.flip());
+                output.clear();
+                flushed = true;
+            }
+            putIntLE(output, (int) crc.getValue());
+            putIntLE(output, length);
+            if (!flushed) {
+                res.setContentLength(output.position());
+            }
+            write(out, output.flip());
+        } finally {
+            pool.release(output);
+            scratch.release(deflater);
+        }
+    }
+
+    private static void putIntLE(ByteBuffer buffer, int value) {
+        buffer.put((byte) value).put((byte) (value >> 8)).put((byte) (value >> 16)).put((byte) (value >> 24));
+    }
+
+    private static void write(OutputStream out, ByteBuffer bytes) throws IOException {
+        if (out instanceof HttpOutput jetty) {
+            // Written straight from the direct buffer, no copy to the heap and back
+            jetty.write(bytes);
+            return;
+        }
+        byte[] chunk = scratch().bytes;
+        while (bytes.hasRemaining()) {
+            int length = Math.min(chunk.length, bytes.remaining());
+            bytes.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    private static Scratch scratch() {
+        // Virtual threads are short-lived, a cached scratch would just be garbage later
+        return Thread.currentThread().isVirtual() ? new Scratch() : SCRATCH.get();
+    }
+
+    @Override
+    public int read() {
+        return buffer != null && buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (buffer == null || !buffer.hasRemaining()) {
+            return -1;
+        }
+        int read = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public byte[] readAllBytes() {
+        byte[] bytes = new byte[available()];
+        if (buffer != null) {
+            buffer.get(bytes);
+        }
+        return bytes;
+    }
+
+    @Override
+    public int available() {
+        return buffer != null ? buffer.remaining() : 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        mark = buffer != null ? buffer.position() : 0;
+    }
+
+    @Override
+    public synchronized void reset() {
+        if (buffer != null) {
+            buffer.position(mark);
+        }
+    }
+
+    /**
+     * Returns the buffer to the pool; Javalin closes the result once written or replaced
+     */
+    @Override
+    public void close() {
+        ByteBuffer released = buffer;
+        buffer = null;
+        if (released != null) {
+            pool.release(released);
+        }
+    }
+
+    /**
+     * Per-thread arrays, encoder and deflater reused by every body encoded or gzipped on the thread
+     */
+    private static final class Scratch {
+
+        final char[] chars = new char[CHUNK];
+        // Room for CHUNK chars in any charset, at most 4 bytes each
+        final byte[] bytes = new byte[CHUNK * 4];
+        final CRC32 crc = new CRC32();
+        private final CharsetEncoder utf8 = replacing(StandardCharsets.UTF_8.newEncoder());
+        private Deflater deflater;
+
+        CharsetEncoder encoder(Charset charset) {
+            // Replaces unmappable characters like String.getBytes() does
+            CharsetEncoder encoder = charset.equals(StandardCharsets.UTF_8) ? utf8 : replacing(charset.newEncoder());
+            return encoder.reset();
+        }
+
+        private static CharsetEncoder replacing(CharsetEncoder encoder) {
+            return encoder.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+
+        Deflater deflater(int level) {
+            Deflater cached = deflater;
+            deflater = null;
+            Deflater deflater = cached != null ? cached : new Deflater(level, true);
+            deflater.setLevel(level);
+            return deflater;
+        }
+
+        void release(Deflater used) {
+            used.reset();
+            if (Thread.currentThread().isVirtual()) {
+                used.end();
+            } else {
+                deflater = used;
+            }
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package spark;
+
+import io.javalin.http.Context;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.client.AbstractConnectionPool;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpDestination;
+import org.eclipse.jetty.client.api.Destination;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.util.InputStreamRequestContent;
+import org.eclipse.jetty.client.util.InputStreamResponseListener;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.util.HttpCookieStore;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Reverse proxy to one upstream, returned by proxy(path, upstreamBaseUrl, options).
+ *
+ * Requests are forwarded with their path and query string over a pool of keep-alive
+ * connections. Request and response bodies are streamed through in chunks, never held
+ * in memory as a whole. The upstream not answering in time gives 504, an unreachable
+ * upstream 502, and a full connection pool queue 503.
+ */
+public class Proxy {
+
+    // RFC 9110 7.6.1: meaningful for a single connection only, never forwarded,
+    // along with any header the Connection header lists
+    private static final Set<String> HOP_BY_HOP = Set.of(
+        "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "proxy-connection",
+        "te", "trailer", "transfer-encoding", "upgrade", "host");
+
+    private final URI upstream;
+    private final String upstreamBase;
+    private final ProxyOptions options;
+    private final HttpClient client;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    Proxy(String upstreamBaseUrl, ProxyOptions options) {
+        this.upstream = URI.create(upstreamBaseUrl);
+        this.upstreamBase = upstreamBaseUrl.endsWith("/")
+            ? upstreamBaseUrl.substring(0, upstreamBaseUrl.length() - 1) : upstreamBaseUrl;
+        this.options = options;
+
+        QueuedThreadPool executor = new QueuedThreadPool();
+        executor.setName("spark-proxy-" + upstream.getHost());
+        executor.setDaemon(true);
+        this.client = new HttpClient();
+        client.setExecutor(executor);
+        client.setConnectTimeout(options.connectTimeout.toMillis());
+        client.setIdleTimeout(options.idleTimeout.toMillis());
+        client.setMaxConnectionsPerDestination(options.maxConnections);
+        client.setMaxRequestsQueuedPerDestination(options.maxQueued);
+        // Forward exactly what the upstream sends: no redirects, cookies, decompression or added agent
+        client.setFollowRedirects(false);
+        client.setCookieStore(new HttpCookieStore.Empty());
+        client.setUserAgentField(null);
+        client.getContentDecoderFactories().clear();
+        try {
+            client.start();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot start proxy client for " + upstreamBaseUrl, e);
+        }
+    }
+
+    void handle(Context ctx) throws Exception {
+        requests.incrementAndGet();
+        HttpServletRequest req = ctx.req();
+        Request request = new Request(ctx);
+
+        String query = req.getQueryString();
+        String target = upstreamBase + req.getRequestURI() + (query != null ? "?" + query : "");
+        long timeoutMillis = timeoutMillis(request);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        org.eclipse.jetty.client.api.Request upstreamRequest = client.newRequest(target)
+            .method(req.getMethod())
+            .timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+
+        Set<String> requestHopByHop = hopByHop(req.getHeaders("Connection"));
+        upstreamRequest.headers(headers -> {
+            Enumeration<String> names = req.getHeaderNames();
+            while (names.hasMoreElements()) {
+                String name = names.nextElement();
+                if (requestHopByHop.contains(name.toLowerCase())) {
+                    continue;
+                }
+                Enumeration<String> values = req.getHeaders(name);
+                while (values.hasMoreElements()) {
+                    headers.add(name, values.nextElement());
+                }
+            }
+            String forwardedFor = req.getHeader("X-Forwarded-For");
+            headers.put("X-Forwarded-For", forwardedFor == null ? req.getRemoteAddr() : forwardedFor + ", " + req.getRemoteAddr());
+            headers.put("X-Forwarded-Proto", req.getScheme());
+            headers.put("X-Forwarded-Host", req.getHeader("Host"));
+            if (options.requestHeaders != null) {
+                options.requestHeaders.accept(request, headers);
+            }
+        });
+
+        if (req.getContentLengthLong() > 0 || req.getHeader("Transfer-Encoding") != null) {
+            upstreamRequest.body(new InputStreamRequestContent(req.getContentType(), req.getInputStream()));
+        }
+
+        InputStreamResponseListener listener = new InputStreamResponseListener();
+        upstreamRequest.send(listener);
+
+        Response response;
+        try {
+            // Sending the body may have used up part of the timeout
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            response = listener.get(Math.max(1, remaining), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            upstreamRequest.abort(e);
+            fail(ctx, 504, "Gateway Timeout", true);
+            return;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                fail(ctx, 504, "Gateway Timeout", true);
+            } else if (e.getCause() instanceof RejectedExecutionException) {
+                // Connection pool and its queue are full
+                fail(ctx, 503, "Service Unavailable", false);
+            } else {
+                fail(ctx, 502, "Bad Gateway", false);
+            }
+            return;
+        }
+
+        HttpServletResponse res = ctx.res();
+        res.setStatus(response.getStatus());
+        Set<String> responseHopByHop = hopByHop(response.getHeaders().getValues("Connection"));
+        HttpFields.Mutable headers = HttpFields.build(response.getHeaders());
+        if (options.responseHeaders != null) {
+            options.responseHeaders.accept(request, headers);
+        }
+        for (HttpField field : headers) {
+            if (!responseHopByHop.contains(field.getLowerCaseName())) {
+                res.addHeader(field.getName(), field.getValue());
+            }
+        }
+
+        // Stream the body through without the response ever being held in memory
+        try (InputStream body = listener.getInputStream()) {
+            OutputStream out = res.getOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                out.write(buffer, 0, read);
+                if (body.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // Headers are already sent, all that's left is to cut the connection
+            failures.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the fixed hop-by-hop headers plus those the Connection header values name
+     */
+    private static Set<String> hopByHop(Enumeration<String> connection) {
+        if (connection == null || !connection.hasMoreElements()) {
+            return HOP_BY_HOP;
+        }
+        Set<String> names = new HashSet<>(HOP_BY_HOP);
+        while (connection.hasMoreElements()) {
+            for (String token : connection.nextElement().split(",")) {
+                names.add(token.trim().toLowerCase());
+            }
+        }
+        return names;
+    }
+
+    private long timeoutMillis(Request request) {
+        long timeout = options.responseTimeout.toMillis();
+        Duration remaining = request.remainingTime();
+        return remaining != null ? Math.max(1, Math.min(timeout, remaining.toMillis())) : timeout;
+    }
+
+    private void fail(Context ctx, int status, String message, boolean timeout) {
+        failures.incrementAndGet();
+        if (timeout) {
+            timeouts.incrementAndGet();
+        }
+        ctx.status(status);
+        ctx.result(message);
+    }
+
+    void stop() {
+        try {
+            client.stop();
+        } catch (Exception e) {
+            // Shutting down anyway
+        }
+    }
+
+    /**
+     * @return requests forwarded
+     */
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * @return requests that failed with 502/503/504 or broke off while streaming
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    /**
+     * @return requests the upstream didn't answer within the response timeout
+     */
+    public long timeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return open upstream connections
+     */
+    public int connections() {
+        return pool() == null ? 0 : pool().getConnectionCount();
+    }
+
+    /**
+     * @return upstream connections currently carrying a request
+     */
+    public int activeConnections() {
+        return pool() == null ? 0 : pool().getActiveConnectionCount();
+    }
+
+    /**
+     * @return open upstream connections waiting in the pool for reuse
+     */
+    public int idleConnections() {
+        return pool() == null ? 0 : pool().getIdleConnectionCount();
+    }
+
+    /**
+     * @return requests waiting for a connection because the pool is at maxConnections
+     */
+    public int queuedRequests() {
+        for (Destination destination : client.getDestinations()) {
+            return ((HttpDestination) destination).getQueuedRequestCount();
+        }
+        return 0;
+    }
+
+    private AbstractConnectionPool pool() {
+        for (Destination destination : client.getDestinations()) {
+            return (AbstractConnectionPool) ((HttpDestination) destination).getConnectionPool();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "Proxy[" + upstream + ", requests=" + requests() + ", failures=" + failures() +
+            ", connections=" + connections() + ", active=" + activeConnections() + ", idle=" + idleConnections() +
+            ", queued=" + queuedRequests() + "]";
+    }
+}
@@ -0,0 +1,77 @@
+package spark;
+
+import java.time.Duration;
+import java.util.function.BiConsumer;
+import org.eclipse.jetty.http.HttpFields;
+
+/**
+ * Settings for a proxy(...) route, e.g.
+ * new ProxyOptions().responseTimeout(Duration.ofSeconds(5)).requestHeaders((request, headers) -> headers.put("X-Api-Key", key))
+ */
+public class ProxyOptions {
+
+    Duration connectTimeout = Duration.ofSeconds(5);
+    Duration responseTimeout = Duration.ofSeconds(30);
+    Duration idleTimeout = Duration.ofSeconds(60);
+    int maxConnections = 64;
+    int maxQueued = 1024;
+    BiConsumer<Request, HttpFields.Mutable> requestHeaders;
+    BiConsumer<Request, HttpFields.Mutable> responseHeaders;
+
+    /**
+     * Time allowed to open a connection to the upstream, default 5s
+     */
+    public ProxyOptions connectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * Time allowed for the whole upstream exchange, default 30s. Shortened to the
+     * request's remaining deadline when the service has a timeout(...).
+     */
+    public ProxyOptions responseTimeout(Duration responseTimeout) {
+        this.responseTimeout = responseTimeout;
+        return this;
+    }
+
+    /**
+     * How long a pooled upstream connection is kept alive while unused, default 60s
+     */
+    public ProxyOptions idleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * Upper bound on pooled connections to the upstream, default 64
+     */
+    public ProxyOptions maxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+
+    /**
+     * Requests that may wait for a pooled connection before new ones fail with 503, default 1024
+     */
+    public ProxyOptions maxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+        return this;
+    }
+
+    /**
+     * Hook to add, change or remove headers sent upstream, after hop-by-hop headers are dropped
+     */
+    public ProxyOptions requestHeaders(BiConsumer<Request, HttpFields.Mutable> rewriter) {
+        this.requestHeaders = rewriter;
+        return this;
+    }
+
+    /**
+     * Hook to add, change or remove upstream response headers before they are sent to the client
+     */
+    public ProxyOptions responseHeaders(BiConsumer<Request, HttpFields.Mutable> rewriter) {
+        this.responseHeaders = rewriter;
+        return this;
+    }
+}
@@ -0,0 +1,212 @@
+package spark;
+
+import io.javalin.http.Context;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Per-client token bucket rate limit for a path pattern.
+ *
+ * Each client key holds a single AtomicLong (the bucket's "theoretical arrival time", GCRA),
+ * so taking a token is one CAS with no locks. Keys live in a table split into stripes;
+ * when a stripe is full it is swept for buckets that have refilled completely, which can be
+ * dropped without changing behaviour. Sweeps are spaced a quarter of the stripe's share of
+ * inserts apart, so their cost is amortized. New keys arriving while a stripe is full of
+ * active buckets share that stripe's overflow bucket until space frees up, so memory stays
+ * bounded no matter how many distinct clients show up and a flood of keys is still limited.
+ */
+public class RateLimiter {
+
+    private static final int STRIPES = 64;
+    private static final String[] RETRY_AFTER = new String[61];
+
+    static {
+        for (int i = 0; i < RETRY_AFTER.length; i++) {
+            RETRY_AFTER[i] = String.valueOf(i);
+        }
+    }
+
+    private final PathPattern pattern;
+    private final Function<Context, String> keyFunction;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeysPerStripe;
+
+    @SuppressWarnings("unchecked")
+    private final ConcurrentHashMap<String, AtomicLong>[] stripes =
+        (ConcurrentHashMap<String, AtomicLong>[]) new ConcurrentHashMap<?, ?>[STRIPES];
+    private final AtomicBoolean[] sweeping = new AtomicBoolean[STRIPES];
+    private final AtomicInteger[] insertsUntilSweep = new AtomicInteger[STRIPES];
+    private final AtomicLong[] overflow = new AtomicLong[STRIPES];
+
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+
+    /**
+     * @param path              Spark-style path pattern the limit applies to, e.g. "/api/*"
+     * @param permitsPerSecond  sustained request rate allowed per key
+     * @param burst             requests a key may send at once after being idle
+     * @param keyFunction       extracts the client key, e.g. RateLimiter.byIp()
+     * @param maxKeys           upper bound on tracked keys before idle ones are evicted
+     */
+    public RateLimiter(String path, double permitsPerSecond, int burst,
+                       Function<Context, String> keyFunction, int maxKeys) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond must be > 0 and burst >= 1");
+        }
+        this.pattern = PathPattern.compile(path);
+        this.keyFunction = keyFunction;
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = intervalNanos * burst;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+        long now = System.nanoTime();
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+            sweeping[i] = new AtomicBoolean();
+            insertsUntilSweep[i] = new AtomicInteger();
+            overflow[i] = new AtomicLong(now);
+        }
+    }
+
+    /**
+     * Keys clients by their IP address
+     */
+    public static Function<Context, String> byIp() {
+        return Context::ip;
+    }
+
+    /**
+     * Keys clients by a request header, e.g. an API key, falling back to the IP address
+     */
+    public static Function<Context, String> byHeader(String header) {
+        return ctx -> {
+            String value = ctx.header(header);
+            return value != null ? value : ctx.ip();
+        };
+    }
+
+    boolean matches(String path) {
+        return pattern.matches(path);
+    }
+
+    /**
+     * Takes a token for the request's client
+     *
+     * @return 0 if the request may proceed, otherwise the nanoseconds until a token is available
+     */
+    long tryAcquire(Context ctx) {
+        String key = keyFunction.apply(ctx);
+        return tryAcquire(key != null ? key : "", System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        int index = (key.hashCode() & 0x7fffffff) % STRIPES;
+        AtomicLong bucket = stripes[index].get(key);
+        if (bucket == null) {
+            bucket = track(index, key, now);
+        }
+
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                rejected.incrementAndGet();
+                return wait;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                allowed.incrementAndGet();
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Bucket for a key seen for the first time, or the stripe's overflow bucket when it is full
+     */
+    private AtomicLong track(int index, String key, long now) {
+        ConcurrentHashMap<String, AtomicLong> stripe = stripes[index];
+        if (stripe.size() >= maxKeysPerStripe) {
+            if (insertsUntilSweep[index].decrementAndGet() <= 0) {
+                sweep(index, now);
+            }
+            if (stripe.size() >= maxKeysPerStripe) {
+                overflowed.incrementAndGet();
+                return overflow[index];
+            }
+        }
+        return stripe.computeIfAbsent(key, k -> new AtomicLong(now));
+    }
+
+    /**
+     * Drops the stripe's buckets that have fully refilled; active buckets are never evicted
+     */
+    private void sweep(int index, long now) {
+        if (!sweeping[index].compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Iterator<AtomicLong> buckets = stripes[index].values().iterator();
+            while (buckets.hasNext()) {
+                if (buckets.next().get() <= now) {
+                    buckets.remove();
+                    evicted.incrementAndGet();
+                }
+            }
+            insertsUntilSweep[index].set(Math.max(1, maxKeysPerStripe / 4));
+        } finally {
+            sweeping[index].set(false);
+        }
+    }
+
+    /**
+     * @return Retry-After header value for a rejection with the given wait
+     */
+    static String retryAfter(long waitNanos) {
+        long seconds = Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        return seconds < RETRY_AFTER.length ? RETRY_AFTER[(int) seconds] : String.valueOf(seconds);
+    }
+
+    /**
+     * @return number of keys currently tracked
+     */
+    public int trackedKeys() {
+        int total = 0;
+        for (ConcurrentHashMap<String, AtomicLong> stripe : stripes) {
+            total += stripe.size();
+        }
+        return total;
+    }
+
+    public long allowed() {
+        return allowed.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public long evicted() {
+        return evicted.get();
+    }
+
+    /**
+     * @return requests from new keys that found their stripe full of active buckets
+     * and were limited through the stripe's shared overflow bucket
+     */
+    public long overflowed() {
+        return overflowed.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimiter[" + pattern + "]";
+    }
+}
@@ -1,7 +1,22 @@
 package spark;
 
+import io.javalin.http.BadRequestResponse;
+import io.javalin.http.ContentTooLargeResponse;
 import io.javalin.http.Context;
 import io.javalin.http.UploadedFile;
+import io.javalin.http.servlet.MaxRequestSize;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Duration;
 import java.util.Map;
 import java.util.Set;
 import java.util.List;
@@ -11,6 +26,7 @@ import java.util.List;
  */
 public class Request {
 
+    // Javalin registers its HttpConfig.maxRequestSize under this key
     private final Context context;
 
     public Request(Context context) {
@@ -178,6 +194,67 @@ public class Request {
         return context.bodyAsBytes();
     }
 
+    /**
+     * Binds the JSON body to a record or POJO, reading it straight from the request stream,
+     * so the body is never held as a String or tree. Once bound, body() is empty unless
+     * the body had been read before.
+     *
+     * @throws BadRequestResponse (400) if the body isn't valid JSON or doesn't fit type
+     * @throws ContentTooLargeResponse (413) if the body is larger than Javalin's maxRequestSize
+     */
+    public <T> T bodyAs(Class<T> type) {
+        try (Reader reader = new InputStreamReader(bodyStream(), charset())) {
+            return BodyCodec.json(reader, type);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new BadRequestResponse("Invalid body: " + e.getMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Binds the form parameters to the properties of a record or POJO
+     *
+     * @throws BadRequestResponse (400) if a value doesn't fit its property
+     */
+    public <T> T formAs(Class<T> type) {
+        try {
+            return BodyCodec.form(context.formParamMap(), type);
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new BadRequestResponse("Invalid form: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The body as a stream held to Javalin's maxRequestSize, or the bytes body() kept if it was read before
+     *
+     * @throws ContentTooLargeResponse (413) if the body is, or turns out to be, larger
+     */
+    InputStream bodyStream() throws IOException {
+        // The same limit body() and bodyAsBytes() get from Javalin
+        long maxRequestSize = context.appData(MaxRequestSize.INSTANCE.getMaxRequestSizeKey());
+        if (context.req().getContentLengthLong() > maxRequestSize) {
+            throw new ContentTooLargeResponse();
+        }
+        PushbackInputStream in = new PushbackInputStream(new LimitedInputStream(context.req().getInputStream(), maxRequestSize));
+        int first = in.read();
+        if (first < 0) {
+            // Already consumed, possibly by body(), which keeps the bytes
+            return new ByteArrayInputStream(context.bodyAsBytes());
+        }
+        in.unread(first);
+        return in;
+    }
+
+    private Charset charset() {
+        String encoding = context.req().getCharacterEncoding();
+        try {
+            return encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
     /**
      * Gets cookie by name
      */
@@ -346,4 +423,58 @@ public class Request {
             .mapToInt(List::size)
             .sum();
     }
+
+    /**
+     * Time left before this request's deadline, so calls made by the route can use a shorter timeout
+     * @return remaining time (zero once expired), or null if the route has no timeout
+     */
+    public Duration remainingTime() {
+        return Deadlines.remaining(context);
+    }
+
+    /**
+     * Request body stream that fails once more than limit bytes have been read,
+     * for bodies sent without a Content-Length
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count(skipped);
+            return skipped;
+        }
+
+        private void count(long bytes) {
+            remaining -= bytes;
+            if (remaining < 0) {
+                throw new ContentTooLargeResponse();
+            }
+        }
+    }
 }
@@ -0,0 +1,265 @@
+package spark;
+
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Server-side cache of encoded GET responses (status, headers and body bytes).
+ *
+ * Concurrent misses for the same key are coalesced: one request runs the route while
+ * the others wait for its result, so an expiring hot key causes one route invocation
+ * instead of a thundering herd; a waiter gives up at its deadline (or after 30s) and renders
+ * its own response. The cache is bounded by body bytes and evicts with
+ * CLOCK (second chance), an LRU approximation that needs no lock on hits. Expired entries
+ * keep their place until replaced or reached by the clock hand, which evicts them first.
+ * Only 2xx responses that don't set cookies are cached.
+ */
+public class ResponseCache {
+
+    private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final long ttlNanos;
+    private final long maxBytes;
+    private final Function<Context, String> keyFunction;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> clock = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param ttlMillis    how long a response stays fresh
+     * @param maxBytes     upper bound on cached body bytes
+     * @param keyFunction  builds the cache key, e.g. ResponseCache.key(List.of("page"), List.of("Accept"))
+     */
+    public ResponseCache(long ttlMillis, long maxBytes, Function<Context, String> keyFunction) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxBytes = maxBytes;
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * Keys on the request path and the full query string
+     */
+    public static Function<Context, String> byPathAndQuery() {
+        return ctx -> {
+            String query = ctx.queryString();
+            return query == null ? ctx.path() : ctx.path() + "?" + query;
+        };
+    }
+
+    /**
+     * Keys on the request path plus the given query params and request headers, ignoring everything else
+     */
+    public static Function<Context, String> key(List<String> queryParams, List<String> headers) {
+        return ctx -> {
+            StringBuilder key = new StringBuilder(ctx.path());
+            for (String param : queryParams) {
+                key.append('\u0000').append(param).append('=').append(ctx.queryParams(param));
+            }
+            for (String header : headers) {
+                key.append('\u0000').append(header).append(':').append(ctx.header(header));
+            }
+            return key.toString();
+        };
+    }
+
+    /**
+     * Serves the request from the cache, or runs the handler and caches its response
+     */
+    void handle(Context ctx, Handler handler) throws Exception {
+        String key = keyFunction.apply(ctx);
+        Entry cached = lookup(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            cached.response.writeTo(ctx);
+            return;
+        }
+
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> leader = loading.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            Entry shared = await(ctx, leader);
+            if (shared != null) {
+                shared.response.writeTo(ctx);
+            } else {
+                // The leader's response wasn't cacheable, so each waiter renders its own
+                handler.handle(ctx);
+            }
+            return;
+        }
+
+        try {
+            cached = lookup(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                cached.response.writeTo(ctx);
+                mine.complete(cached);
+                return;
+            }
+            misses.incrementAndGet();
+            Map<String, List<String>> before = StoredResponse.headers(ctx);
+            handler.handle(ctx);
+            Entry created = capture(ctx, before);
+            if (created != null) {
+                store(key, created);
+            }
+            mine.complete(created);
+        } finally {
+            // Releases the waiters whatever the route threw, Errors included
+            mine.complete(null);
+            loading.remove(key, mine);
+        }
+    }
+
+    private Entry lookup(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.expired(ttlNanos)) {
+            // An expired entry stays mapped, and its key queued once, until replaced or evicted
+            return null;
+        }
+        entry.referenced = true;
+        return entry;
+    }
+
+    /**
+     * Waits for the leader's render until the request's deadline, or MAX_WAIT without one
+     *
+     * @return the leader's entry, or null if there is none to share in time
+     */
+    private static Entry await(Context ctx, CompletableFuture<Entry> leader) throws Exception {
+        try {
+            return leader.get(Deadlines.remainingNanos(ctx, MAX_WAIT_NANOS), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    private void store(String key, Entry entry) {
+        if (entry.size() > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        bytes.addAndGet(entry.size() - (previous != null ? previous.size() : 0));
+        // A key is queued exactly while it is mapped
+        if (previous == null) {
+            clock.add(key);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * CLOCK eviction: unexpired entries hit since the hand last passed get a second chance
+     */
+    private void evictIfNeeded() {
+        while (bytes.get() > maxBytes) {
+            String key = clock.poll();
+            if (key == null) {
+                return;
+            }
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                continue;
+            }
+            if (entry.referenced && !entry.expired(ttlNanos)) {
+                entry.referenced = false;
+                clock.add(key);
+            } else if (entries.remove(key, entry)) {
+                bytes.addAndGet(-entry.size());
+                evictions.incrementAndGet();
+            } else {
+                // Replaced meanwhile, the new entry keeps the key's place
+                clock.add(key);
+            }
+        }
+    }
+
+    /**
+     * Snapshots the response the route produced if it may be shared between clients
+     */
+    private static Entry capture(Context ctx, Map<String, List<String>> before) throws Exception {
+        int status = ctx.statusCode();
+        if (status < 200 || status >= 300 || ctx.res().containsHeader("Set-Cookie")) {
+            return null;
+        }
+        return new Entry(StoredResponse.capture(ctx, before), System.nanoTime());
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * @return requests that waited for another request's in-flight render instead of invoking the route
+     */
+    public long coalesced() {
+        return coalesced.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return body bytes currently held
+     */
+    public long bytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return keys queued for the clock hand, one per cached response
+     */
+    int queuedKeys() {
+        return clock.size();
+    }
+
+    /**
+     * Drops every cached response
+     */
+    public void invalidateAll() {
+        entries.clear();
+        clock.clear();
+        bytes.set(0);
+    }
+
+    private static final class Entry {
+
+        final StoredResponse response;
+        final long createdNanos;
+        volatile boolean referenced;
+
+        Entry(StoredResponse response, long createdNanos) {
+            this.response = response;
+            this.createdNanos = createdNanos;
+        }
+
+        long size() {
+            return response.body().length;
+        }
+
+        boolean expired(long ttlNanos) {
+            return System.nanoTime() - createdNanos > ttlNanos;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package spark;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Per-route settings, returned when a route is registered, e.g.
+ * post("/orders", route).idempotent()
+ */
+public class RouteOptions {
+
+    private final String method;
+    private final String path;
+
+    private volatile IdempotencyHandler idempotency;
+    private volatile Bulkhead bulkhead;
+    private volatile Duration timeout;
+
+    RouteOptions(String method, String path) {
+        this.method = method;
+        this.path = path;
+    }
+
+    /**
+     * Honors the Idempotency-Key header using an in-memory store (24h, 10000 keys),
+     * keeping the keys of each client IP address apart
+     */
+    public RouteOptions idempotent() {
+        return idempotent(new InMemoryIdempotencyStore());
+    }
+
+    /**
+     * Honors the Idempotency-Key header: the first response for a key is stored in store
+     * and replayed for retries, concurrent duplicates wait for the first execution.
+     * Keys are scoped to the client IP address.
+     */
+    public RouteOptions idempotent(IdempotencyStore store) {
+        return idempotent(store, Request::ip);
+    }
+
+    /**
+     * Like idempotent(store), with keys scoped to the principal returned for each request,
+     * e.g. the authenticated user, so clients can't replay each other's responses.
+     * Reusing a key for a different request (target or body) is answered with 422.
+     */
+    public RouteOptions idempotent(IdempotencyStore store, Function<Request, String> principal) {
+        this.idempotency = new IdempotencyHandler(method + " " + path, store, principal);
+        return this;
+    }
+
+    IdempotencyHandler idempotency() {
+        return idempotency;
+    }
+
+    /**
+     * Runs this route on the given bulkhead instead of the shared Jetty pool
+     */
+    public RouteOptions bulkhead(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+        return this;
+    }
+
+    Bulkhead bulkhead() {
+        return bulkhead;
+    }
+
+    /**
+     * Interrupts the route and answers 504 if it runs longer than timeout,
+     * overriding the global timeout. Duration.ZERO disables the timeout for this route.
+     */
+    public RouteOptions timeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    Duration timeout() {
+        return timeout;
+    }
+
+    public String method() {
+        return method;
+    }
+
+    public String path() {
+        return path;
+    }
+}
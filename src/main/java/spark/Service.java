@@ -0,0 +1,1101 @@
+package spark;
+
+import io.javalin.Javalin;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.HandlerType;
+import io.javalin.http.servlet.DefaultTasks;
+import io.javalin.http.servlet.SubmitOrder;
+import io.javalin.http.servlet.Task;
+import io.javalin.http.staticfiles.Location;
+import jakarta.servlet.ServletException;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+import kotlin.Unit;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * One bridge server: its own Javalin/Jetty instance, routes, filters, thread pool and connector.
+ * The static Spark API delegates to a default Service; create more with Service.ignite(),
+ * e.g. a public API port and an internal admin port whose traffic never shares threads.
+ */
+public class Service {
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    Logger logger = Logger.getLogger("SparkJavalinBridge");
+
+    private final int id = IDS.getAndIncrement();
+    private Javalin javalin;
+
+    private final StaticFiles staticFiles;
+
+    private String ipAddress;
+    private int port = 7070;
+    private boolean initialized = false;
+    
+    // Thread pool configuration
+    private Integer minThreads;
+    private Integer maxThreads;
+    private Integer timeoutMillis;
+
+    // Connector settings, null for Javalin's default connector
+    private ConnectorOptions connectorOptions;
+    private Path unixSocket;
+
+    // Graceful shutdown
+    private int shutdownTimeoutMillis = 30000;
+    private int readinessDelayMillis = 0;
+    private volatile boolean draining = false;
+    private volatile CountDownLatch stopLatch = new CountDownLatch(0);
+
+    // Adaptive concurrency limits by route path
+    private final Map<String, ConcurrencyLimiter> concurrencyLimiters = new ConcurrentHashMap<>();
+
+    // Response caches for GET routes by route path
+    private final Map<String, ResponseCache> responseCaches = new ConcurrentHashMap<>();
+
+    // Conditional GET (ETag / If-None-Match) by route path
+    private final Map<String, EtagHandler> etagHandlers = new ConcurrentHashMap<>();
+
+    // Per-client rate limits, checked before any filter runs
+    private final List<RateLimiter> rateLimiters = new CopyOnWriteArrayList<>();
+
+    // Global route timeout, 0 for none
+    private volatile long routeTimeoutNanos;
+    private final Bulkhead timeoutExecutor = Bulkhead.unbounded("spark-timeout");
+
+    // Access log, if enabled; closed with the server
+    private volatile AccessLog accessLog;
+
+    // Reverse proxies, stopped with the server
+    private final List<Proxy> proxies = new CopyOnWriteArrayList<>();
+
+    // Server-Sent Events streams, ended when the server stops
+    private final List<EventStream> eventStreams = new CopyOnWriteArrayList<>();
+
+    // Direct buffers that long route results are encoded into
+    private final BufferPool responseBuffers = new BufferPool();
+
+    // Bulkheads by path pattern, for routes that don't name their own
+    private final List<Map.Entry<PathPattern, Bulkhead>> bulkheads = new CopyOnWriteArrayList<>();
+
+    Service(StaticFiles staticFiles) {
+        this.staticFiles = staticFiles;
+        logger.info("Spark Javalin Bridge is igniting");
+    }
+
+    /**
+     * Creates a new, independent server instance
+     */
+    public static Service ignite() {
+        return new Service(new StaticFiles());
+    }
+
+    /**
+     * Port to listen on, 0 for any free port, -1 for no TCP listener. With -1 and no unix socket
+     * the server never starts and routes are only reachable through localClient().
+     */
+    public Service port(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public Service threadPool(int minThreads, int maxThreads, int timeoutMillis) {
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Configures the HTTP connector (acceptors, selectors, buffers, timeouts, socket options),
+     * see ConnectorOptions for the defaults. Must be called before any route is added.
+     */
+    public Service connector(ConnectorOptions options) {
+        this.connectorOptions = options;
+        return this;
+    }
+
+    /**
+     * Also listens on a Unix domain socket at path, e.g. for a sidecar proxy on the same host.
+     * A stale socket file left at path by a server that is gone is replaced; anything else
+     * at path fails the start. Call port(-1) to listen only on the socket.
+     * The socket uses the connector() settings, or the ConnectorOptions defaults without them;
+     * the TCP connector stays Javalin's default unless connector() is set.
+     * Must be called before any route is added.
+     */
+    public Service unixSocket(Path path) {
+        this.unixSocket = path;
+        return this;
+    }
+
+    /**
+     * Sets how long stop() waits for in-flight requests to finish before closing connections.
+     * Defaults to 30 seconds, 0 stops immediately.
+     */
+    public Service shutdownTimeout(int timeoutMillis) {
+        this.shutdownTimeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Sets how long stop() keeps accepting connections after readiness starts failing, so load
+     * balancers polling readinessCheck() stop sending traffic before the connectors close.
+     * Defaults to 0, which closes them right away.
+     */
+    public Service readinessDelay(int delayMillis) {
+        this.readinessDelayMillis = delayMillis;
+        return this;
+    }
+
+    /**
+     * Registers a GET endpoint that answers 200 while the server is serving
+     * and 503 as soon as a graceful stop has begun, for load balancer readiness probes
+     */
+    public RouteOptions readinessCheck(String path) {
+        return addRoute("GET", path, (request, response) -> {
+            if (draining) {
+                response.status(503);
+                return "draining";
+            }
+            return "ready";
+        });
+    }
+
+    /**
+     * Limits concurrent requests on the routes registered for path with an adaptive limit.
+     * Requests over the limit get an immediate 503 with Retry-After instead of queueing.
+     *
+     * @return the limiter, for monitoring its current limit and rejections
+     */
+    public ConcurrencyLimiter concurrencyLimit(String path, int initialLimit, int maxLimit) {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(initialLimit, maxLimit);
+        concurrencyLimit(path, limiter);
+        return limiter;
+    }
+
+    /**
+     * Limits concurrent requests on the routes registered for path with the given limiter
+     */
+    public Service concurrencyLimit(String path, ConcurrencyLimiter limiter) {
+        concurrencyLimiters.put(path, limiter);
+        return this;
+    }
+
+    /**
+     * Rate limits requests matching path per client IP address.
+     * Requests over the limit get a 429 with Retry-After before any filter or route runs.
+     *
+     * @return the limiter, for monitoring allowed/rejected counts
+     */
+    public RateLimiter rateLimit(String path, double permitsPerSecond, int burst) {
+        return rateLimit(path, permitsPerSecond, burst, RateLimiter.byIp());
+    }
+
+    /**
+     * Rate limits requests matching path per client key, e.g. RateLimiter.byHeader("X-Api-Key")
+     *
+     * @return the limiter, for monitoring allowed/rejected counts
+     */
+    public RateLimiter rateLimit(String path, double permitsPerSecond, int burst,
+                                 Function<Context, String> keyFunction) {
+        RateLimiter limiter = new RateLimiter(path, permitsPerSecond, burst, keyFunction, 100_000);
+        ensureInitialized();
+        rateLimiters.add(limiter);
+        return limiter;
+    }
+
+    /**
+     * Logs every request to file (method, route, status, bytes, latency, IP, user agent)
+     * from a background thread, see AccessLog
+     *
+     * @return the log, for monitoring written and dropped entries
+     */
+    public AccessLog accessLog(Path file) {
+        return accessLog(file, new AccessLogOptions());
+    }
+
+    /**
+     * Logs every request to file from a background thread, with the given buffer and rotation settings
+     *
+     * @return the log, for monitoring written and dropped entries
+     */
+    public synchronized AccessLog accessLog(Path file, AccessLogOptions options) {
+        AccessLog previous = accessLog;
+        accessLog = new AccessLog(file, options);
+        if (previous != null) {
+            previous.close(shutdownTimeoutMillis);
+        }
+        return accessLog;
+    }
+
+    /**
+     * @return the pool of direct buffers long route results are written from, for monitoring its hit rate
+     */
+    public BufferPool responseBuffers() {
+        return responseBuffers;
+    }
+
+    /**
+     * Caches the responses of the GET route for path for ttlMillis, keyed on path and query string
+     *
+     * @return the cache, for monitoring hit rates or invalidating it
+     */
+    public ResponseCache cache(String path, long ttlMillis) {
+        return cache(path, ttlMillis, ResponseCache.byPathAndQuery());
+    }
+
+    /**
+     * Caches the responses of the GET route for path for ttlMillis under the key built by keyFunction,
+     * see ResponseCache.key(queryParams, headers). Holds up to 64MB of response bodies.
+     *
+     * @return the cache, for monitoring hit rates or invalidating it
+     */
+    public ResponseCache cache(String path, long ttlMillis, Function<Context, String> keyFunction) {
+        ResponseCache cache = new ResponseCache(ttlMillis, 64L * 1024 * 1024, keyFunction);
+        responseCaches.put(path, cache);
+        return cache;
+    }
+
+    /**
+     * Adds an ETag to 200 responses of the GET route for path, computed by hashing the body,
+     * and answers a matching If-None-Match with 304 and no body
+     */
+    public Service etag(String path) {
+        etagHandlers.put(path, new EtagHandler(null));
+        return this;
+    }
+
+    /**
+     * Like etag(path), but the tag comes from a cheap version token (e.g. a row version or
+     * last-modified counter), so a matching request is answered before the route renders anything.
+     * When the function returns null the body is hashed instead.
+     */
+    public Service etag(String path, Function<Request, String> versionFunction) {
+        etagHandlers.put(path, new EtagHandler(versionFunction));
+        return this;
+    }
+
+    /**
+     * Runs every route matching path (e.g. "/reports/*") on the given bulkhead instead of the
+     * shared Jetty pool. A bulkhead set with RouteOptions.bulkhead() takes precedence.
+     */
+    public Service bulkhead(String path, Bulkhead bulkhead) {
+        bulkheads.add(Map.entry(PathPattern.compile(path), bulkhead));
+        return this;
+    }
+
+    /**
+     * Interrupts routes that run longer than timeout and answers 504.
+     * Routes can override it with RouteOptions.timeout().
+     */
+    public Service timeout(Duration timeout) {
+        this.routeTimeoutNanos = timeout.toNanos();
+        return this;
+    }
+
+    public Service ipAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+        return this;
+    }
+
+    public RouteOptions get(String path, Route route) {
+        return addRoute("GET", path, route);
+    }
+
+    public RouteOptions post(String path, Route route) {
+        return addRoute("POST", path, route);
+    }
+
+    public RouteOptions put(String path, Route route) {
+        return addRoute("PUT", path, route);
+    }
+
+    public RouteOptions delete(String path, Route route) {
+        return addRoute("DELETE", path, route);
+    }
+
+    public RouteOptions patch(String path, Route route) {
+        return addRoute("PATCH", path, route);
+    }
+
+    public RouteOptions options(String path, Route route) {
+        return addRoute("OPTIONS", path, route);
+    }
+
+    public RouteOptions head(String path, Route route) {
+        return addRoute("HEAD", path, route);
+    }
+
+    /**
+     * Adds a GET route whose ModelAndView is rendered by engine straight to the response stream
+     */
+    public RouteOptions get(String path, TemplateViewRoute route, TemplateEngine engine) {
+        return addRoute("GET", path, options -> templateHandler(path, options, route, engine));
+    }
+
+    /**
+     * Adds a POST route whose ModelAndView is rendered by engine straight to the response stream
+     */
+    public RouteOptions post(String path, TemplateViewRoute route, TemplateEngine engine) {
+        return addRoute("POST", path, options -> templateHandler(path, options, route, engine));
+    }
+
+    /**
+     * Adds a WebSocket endpoint handled by an object annotated with Jetty's
+     * {@code @WebSocket} callbacks, shared by all sessions
+     */
+    public void webSocket(String path, Object handler) {
+        addWebSocket(path, new WebSocketHandler(handler));
+    }
+
+    /**
+     * Adds a WebSocket endpoint handled by a {@code @WebSocket} annotated class,
+     * instantiated for each session
+     */
+    public void webSocket(String path, Class<?> handlerClass) {
+        addWebSocket(path, new WebSocketHandler(handlerClass));
+    }
+
+    /**
+     * Adds a Server-Sent Events endpoint. handler is called for each client that connects;
+     * publish to the returned stream to send an event to all of them.
+     */
+    public EventStream sse(String path, SseHandler handler) {
+        ensureInitialized();
+        EventStream stream = new EventStream(handler);
+        eventStreams.add(stream);
+        // Registered directly, the route wrappers (cache, ETag, timeouts) don't apply to streams
+        javalin.get(convertSparkPathToJavalinPath(path), stream::handle);
+        return stream;
+    }
+
+    /**
+     * Forwards every request matching path (e.g. "/api/*") to upstreamBaseUrl with the same
+     * path and query string, streaming bodies both ways over pooled keep-alive connections.
+     * The route wrappers (cache, ETag, bulkheads) don't apply; timeout(...) does, by shortening
+     * the upstream response timeout rather than holding a thread.
+     *
+     * @return the proxy, for monitoring its connection pool and failures
+     */
+    public Proxy proxy(String path, String upstreamBaseUrl, ProxyOptions options) {
+        ensureInitialized();
+        Proxy proxy = new Proxy(upstreamBaseUrl, options);
+        proxies.add(proxy);
+        String javalinPath = convertSparkPathToJavalinPath(path);
+        for (HandlerType method : new HandlerType[] {HandlerType.GET, HandlerType.POST, HandlerType.PUT,
+                HandlerType.DELETE, HandlerType.PATCH, HandlerType.OPTIONS, HandlerType.HEAD}) {
+            javalin.addHttpHandler(method, javalinPath, ctx -> {
+                // Registered directly, so the deadline a bulkhead would set is set here
+                long timeout = routeTimeoutNanos;
+                if (timeout > 0) {
+                    ctx.attribute(Deadlines.DEADLINE, System.nanoTime() + timeout);
+                }
+                proxy.handle(ctx);
+            });
+        }
+        return proxy;
+    }
+
+    /**
+     * Like proxy(path, upstreamBaseUrl, options) with default options
+     */
+    public Proxy proxy(String path, String upstreamBaseUrl) {
+        return proxy(path, upstreamBaseUrl, new ProxyOptions());
+    }
+
+    /**
+     * Adds a POST endpoint taking a JSON array of sub-requests ({"method", "path", "headers", "body"})
+     * and answering with a JSON array of their results ({"status", "headers", "body"}). Sub-requests
+     * run in parallel through this service's filters and routes, in memory, so a client can
+     * collapse many calls into one round trip.
+     */
+    public void batch(String path) {
+        batch(path, 50);
+    }
+
+    /**
+     * Like batch(path), rejecting batches of more than maxRequests sub-requests with 400
+     */
+    public void batch(String path, int maxRequests) {
+        ensureInitialized();
+        BatchHandler batch = new BatchHandler(this, path, maxRequests);
+        javalin.post(convertSparkPathToJavalinPath(path), batch::handle);
+    }
+
+    /**
+     * @return a client calling this service's routes in memory, without a socket
+     */
+    public LocalClient localClient() {
+        return new LocalClient(this);
+    }
+
+    /**
+     * Runs a request through the filters, routes and exception handlers in memory,
+     * exactly as if it had arrived on a connection
+     *
+     * @param path     path with optional query string
+     * @param sessions where the request finds its HttpSession
+     * @return the response, once the request has finished (routes on a bulkhead finish later)
+     */
+    CompletableFuture<LocalServletResponse> dispatch(String method, String path, Map<String, List<String>> headers,
+                                                     byte[] body, String remoteAddr, LocalServletRequest.Sessions sessions) {
+        ensureInitialized();
+        LocalServletRequest request = new LocalServletRequest(method, path, headers, body, remoteAddr, sessions);
+        LocalServletResponse response = new LocalServletResponse();
+        request.response(response);
+        try {
+            javalin.javalinServlet().service(request, response);
+        } catch (ServletException | IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        LocalAsyncContext async = request.asyncContextOrNull();
+        return async == null ? CompletableFuture.completedFuture(response) : async.completion().thenApply(done -> response);
+    }
+
+    public StaticFiles staticFiles() {
+        return staticFiles;
+    }
+
+    public void before(String path, Filter filter) {
+        addFilter("BEFORE", path, filter);
+    }
+
+    public void before(Filter filter) {
+        addFilter("BEFORE", "/*", filter);
+    }
+
+    public void after(String path, Filter filter) {
+        addFilter("AFTER", path, filter);
+    }
+
+    public void after(Filter filter) {
+        addFilter("AFTER", "/*", filter);
+    }
+
+    public <T extends Exception> void exception(Class<T> exceptionClass, ExceptionHandler<T> handler) {
+        addExceptionHandler(exceptionClass, handler);
+    }
+
+    public void notFound(Route route) {
+        addNotFoundHandler(route);
+    }
+
+    public void internalServerError(Route route) {
+        addInternalServerErrorHandler(route);
+    }
+
+    /**
+     * Stops the request immediately with status 200, keeping the body set so far.
+     * After filters still run.
+     */
+    public HaltException halt() {
+        throw HaltException.of(200, null);
+    }
+
+    /**
+     * Stops the request immediately with the given status, e.g. halt(401) in an auth filter
+     */
+    public HaltException halt(int status) {
+        throw HaltException.of(status, null);
+    }
+
+    /**
+     * Stops the request immediately with status 200 and the given body
+     */
+    public HaltException halt(String body) {
+        throw HaltException.of(200, body);
+    }
+
+    /**
+     * Stops the request immediately with the given status and body.
+     * After filters still run; the remaining before filters and the route don't.
+     */
+    public HaltException halt(int status, String body) {
+        throw HaltException.of(status, body);
+    }
+
+    /**
+     * Gracefully stops the server: readiness flips to failing, new connections are still accepted
+     * for the readiness delay, then no longer, in-flight requests get up to the shutdown timeout
+     * to finish, then connections are closed
+     */
+    public void stop() {
+        stopServer();
+    }
+
+    /**
+     * Blocks until the server has been stopped, e.g. by stop() from another thread
+     */
+    public void awaitStop() {
+        try {
+            stopLatch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void awaitInitialization() {
+        initializeServer();
+    }
+
+    private RouteOptions addRoute(String method, String path, Route route) {
+        return addRoute(method, path, options -> routeHandler(route, responseBuffers));
+    }
+
+    private RouteOptions addRoute(String method, String path, Function<RouteOptions, Handler> endpoint) {
+        ensureInitialized();
+        
+        // Convert Spark-style path parameters (:param) to Javalin-style ({param})
+        String javalinPath = convertSparkPathToJavalinPath(path);
+        RouteOptions options = new RouteOptions(method.toUpperCase(), path);
+        
+        Handler handler = idempotentHandler(options, limitedHandler(path, endpoint.apply(options)));
+        if ("GET".equalsIgnoreCase(method)) {
+            handler = etagHandler(path, cachedHandler(path, handler));
+        }
+        handler = isolatedHandler(options, handler);
+
+        switch (method.toUpperCase()) {
+            case "GET" -> javalin.get(javalinPath, handler);
+            case "POST" -> javalin.post(javalinPath, handler);
+            case "PUT" -> javalin.put(javalinPath, handler);
+            case "DELETE" -> javalin.delete(javalinPath, handler);
+            case "PATCH" -> javalin.patch(javalinPath, handler);
+            case "OPTIONS" -> javalin.options(javalinPath, handler);
+            case "HEAD" -> javalin.head(javalinPath, handler);
+        }
+        return options;
+    }
+
+    /**
+     * Wraps a Spark route into the Javalin handler registered for it
+     */
+    static Handler routeHandler(Route route) {
+        return routeHandler(route, null);
+    }
+
+    /**
+     * Wraps a Spark route, encoding long String results into buffers from pool (null for none)
+     */
+    static Handler routeHandler(Route route, BufferPool pool) {
+        return ctx -> {
+            Request request = new Request(ctx);
+            Response response = new Response(ctx);
+            Object result;
+            try {
+                result = route.handle(request, response);
+            } catch (HaltException halt) {
+                halt.apply(ctx);
+                return;
+            }
+            if (result != null && !response.isRedirected()) {
+                PooledBody.result(ctx, result.toString(), pool);
+            }
+        };
+    }
+
+    /**
+     * Wraps a template route: the ModelAndView it returns is rendered to the response stream,
+     * or to the result when a cache, ETag or idempotency key needs the body afterwards
+     */
+    private Handler templateHandler(String path, RouteOptions options, TemplateViewRoute route, TemplateEngine engine) {
+        return ctx -> {
+            Request request = new Request(ctx);
+            Response response = new Response(ctx);
+            ctx.contentType("text/html; charset=utf-8");
+            ModelAndView modelAndView;
+            try {
+                modelAndView = route.handle(request, response);
+            } catch (HaltException halt) {
+                halt.apply(ctx);
+                return;
+            }
+            if (modelAndView == null || response.isRedirected()) {
+                return;
+            }
+            if (responseCaches.containsKey(path) || etagHandlers.containsKey(path) || options.idempotency() != null) {
+                ctx.result(engine.render(modelAndView));
+                return;
+            }
+            Writer out = new BufferedWriter(new OutputStreamWriter(ctx.outputStream(), StandardCharsets.UTF_8), 8192);
+            engine.render(modelAndView, out);
+            out.flush();
+        };
+    }
+
+    /**
+     * Applies the concurrency limit configured for path, if any, around a route handler.
+     * The limiter is looked up per request so limits can be set before or after the route.
+     */
+    private Handler limitedHandler(String path, Handler handler) {
+        return ctx -> {
+            ConcurrencyLimiter limiter = concurrencyLimiters.get(path);
+            if (limiter == null) {
+                handler.handle(ctx);
+                return;
+            }
+
+            int inFlight = limiter.tryAcquire();
+            if (inFlight < 0) {
+                ctx.status(503);
+                ctx.header("Retry-After", String.valueOf(limiter.retryAfterSeconds()));
+                ctx.result("Service Unavailable");
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                handler.handle(ctx);
+            } finally {
+                limiter.release(System.nanoTime() - start, inFlight);
+            }
+        };
+    }
+
+    /**
+     * First handler of every request: rejects rate-limited clients before
+     * any Spark filter or route allocates its wrappers
+     */
+    private void admit(Context ctx) {
+        for (RateLimiter limiter : rateLimiters) {
+            if (limiter.matches(ctx.path())) {
+                long wait = limiter.tryAcquire(ctx);
+                if (wait > 0) {
+                    ctx.skipRemainingHandlers();
+                    ctx.status(429);
+                    ctx.header("Retry-After", RateLimiter.retryAfter(wait));
+                    ctx.result("Too Many Requests");
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves GET routes from the response cache configured for path, if any.
+     * Sits outside the concurrency limit so cache hits are never shed.
+     */
+    private Handler cachedHandler(String path, Handler handler) {
+        return ctx -> {
+            ResponseCache cache = responseCaches.get(path);
+            if (cache == null) {
+                handler.handle(ctx);
+            } else {
+                cache.handle(ctx, handler);
+            }
+        };
+    }
+
+    /**
+     * Applies conditional GET handling configured for path, if any.
+     * Outermost, so a version match skips the cache and the route entirely.
+     */
+    private Handler etagHandler(String path, Handler handler) {
+        return ctx -> {
+            EtagHandler etag = etagHandlers.get(path);
+            if (etag == null) {
+                handler.handle(ctx);
+            } else {
+                etag.handle(ctx, handler);
+            }
+        };
+    }
+
+    /**
+     * Applies Idempotency-Key handling if the route opted in.
+     * Outside the concurrency limit, so replays are never shed.
+     */
+    private static Handler idempotentHandler(RouteOptions options, Handler handler) {
+        return ctx -> {
+            IdempotencyHandler idempotency = options.idempotency();
+            if (idempotency == null) {
+                handler.handle(ctx);
+            } else {
+                idempotency.handle(ctx, handler);
+            }
+        };
+    }
+
+    /**
+     * Hands the request to the route's bulkhead, if any, and enforces its timeout.
+     * Outermost, so everything the route does runs on the bulkhead's threads.
+     */
+    private Handler isolatedHandler(RouteOptions options, Handler handler) {
+        return ctx -> {
+            Bulkhead bulkhead = options.bulkhead();
+            if (bulkhead == null) {
+                bulkhead = bulkheadFor(ctx.path());
+            }
+            Duration routeTimeout = options.timeout();
+            long timeout = routeTimeout != null ? routeTimeout.toNanos() : routeTimeoutNanos;
+            if (bulkhead == null && timeout > 0) {
+                // The Jetty thread must not wait on a stuck route, so run it elsewhere
+                bulkhead = timeoutExecutor;
+            }
+            if (bulkhead == null) {
+                handler.handle(ctx);
+            } else {
+                bulkhead.dispatch(ctx, handler, timeout);
+            }
+        };
+    }
+
+    private Bulkhead bulkheadFor(String path) {
+        for (Map.Entry<PathPattern, Bulkhead> entry : bulkheads) {
+            if (entry.getKey().matches(path)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Wraps a Spark filter into the Javalin handler registered for it
+     */
+    static Handler filterHandler(Filter filter) {
+        return ctx -> {
+            Request request = new Request(ctx);
+            Response response = new Response(ctx);
+            try {
+                filter.handle(request, response);
+            } catch (HaltException halt) {
+                halt.apply(ctx);
+                if (ctx.handlerType() == HandlerType.BEFORE) {
+                    // Skips the remaining before filters and the route, after filters still run.
+                    // Stackless, and matched by its own exception handler without a hierarchy walk.
+                    throw halt;
+                }
+            }
+        };
+    }
+
+    /**
+     * Converts Spark-style path parameters (:param) to Javalin-style ({param})
+     */
+    static String convertSparkPathToJavalinPath(String sparkPath) {
+        // Replace :param with {param}
+        return sparkPath.replaceAll(":([^/]+)", "{$1}");
+    }
+
+    private void addFilter(String type, String path, Filter filter) {
+        ensureInitialized();
+        
+        // Convert Spark-style path parameters (:param) to Javalin-style ({param})
+        String javalinPath = convertSparkPathToJavalinPath(path);
+        
+        Handler handler = filterHandler(filter);
+
+        if ("BEFORE".equals(type)) {
+            javalin.before(javalinPath, handler);
+        } else if ("AFTER".equals(type)) {
+            javalin.after(javalinPath, handler);
+        }
+    }
+
+    private void addWebSocket(String path, WebSocketHandler handler) {
+        ensureInitialized();
+        javalin.ws(convertSparkPathToJavalinPath(path), handler::configure);
+    }
+
+    private <T extends Exception> void addExceptionHandler(Class<T> exceptionClass, ExceptionHandler<T> handler) {
+        ensureInitialized();
+        javalin.exception(exceptionClass, (exception, ctx) -> {
+            Request request = new Request(ctx);
+            Response response = new Response(ctx);
+            handler.handle(exception, request, response);
+        });
+    }
+
+    private void addNotFoundHandler(Route route) {
+        ensureInitialized();
+        javalin.error(404, ctx -> {
+            if (HaltException.halted(ctx)) {
+                // The halt's status and body stand
+                return;
+            }
+            Request request = new Request(ctx);
+            Response response = new Response(ctx);
+            Object result = route.handle(request, response);
+            if (result != null) {
+                ctx.result(result.toString());
+            }
+        });
+    }
+
+    private void addInternalServerErrorHandler(Route route) {
+        ensureInitialized();
+        javalin.error(500, ctx -> {
+            if (HaltException.halted(ctx)) {
+                // The halt's status and body stand
+                return;
+            }
+            Request request = new Request(ctx);
+            Response response = new Response(ctx);
+            Object result = route.handle(request, response);
+            if (result != null) {
+                ctx.result(result.toString());
+            }
+        });
+    }
+
+    private void ensureInitialized() {
+        if (!initialized) {
+            initializeServer();
+        }
+    }
+
+    public synchronized void initializeServer() {
+        if (!initialized) {
+            CountDownLatch latch = new CountDownLatch(1);
+            stopLatch = latch;
+            draining = false;
+
+            // Create Javalin instance with configuration
+            var javalinBuilder = Javalin.create(config -> {
+                // Track in-flight requests so Jetty can drain them on stop
+                config.jetty.modifyServer(server -> {
+                    server.setHandler(new StatisticsHandler());
+                    server.setStopTimeout(shutdownTimeoutMillis);
+                });
+                config.events(events -> events.serverStopped(latch::countDown));
+                config.requestLogger.http((ctx, executionTimeMs) -> {
+                    AccessLog log = accessLog;
+                    if (log != null) {
+                        log.record(ctx, executionTimeMs);
+                    }
+                });
+                // Right after the route: exceptions from bulkhead threads reach exception() and error()
+                // handlers exactly as they would have from the request thread
+                config.pvt.servletRequestLifecycle.add(
+                    config.pvt.servletRequestLifecycle.indexOf(DefaultTasks.INSTANCE.getHTTP()) + 1,
+                    (submitTask, servlet, ctx, requestUri) ->
+                        submitTask.invoke(SubmitOrder.LAST, new Task(true, () -> {
+                            Bulkhead.rethrowFailure(ctx);
+                            return Unit.INSTANCE;
+                        })));
+                // Last task of every request: pooled bodies go to Jetty straight from their direct buffers
+                config.pvt.servletRequestLifecycle.add((submitTask, servlet, ctx, requestUri) ->
+                    submitTask.invoke(SubmitOrder.LAST, new Task(false, () -> {
+                        try {
+                            PooledBody.write(ctx, config.pvt.compressionStrategy);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        return Unit.INSTANCE;
+                    })));
+
+                // Each service gets its own pool, so one instance can't starve another
+                if (minThreads != null && maxThreads != null) {
+                    QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads,
+                        timeoutMillis != null ? timeoutMillis : 60000);
+                    threadPool.setName(threadPoolName());
+                    config.jetty.threadPool = threadPool;
+                }
+
+                if (connectorOptions != null) {
+                    config.jetty.modifyHttpConfiguration(connectorOptions::configure);
+                }
+                if (connectorOptions != null || unixSocket != null) {
+                    // TCP first, Javalin reports the port of the first connector
+                    if (port >= 0 && connectorOptions != null) {
+                        config.jetty.addConnector((server, httpConfiguration) ->
+                            connectorOptions.create(server, httpConfiguration, ipAddress, port));
+                    } else if (port >= 0) {
+                        // Javalin only adds its default connector when there is no other, so add the same one
+                        config.jetty.addConnector((server, httpConfiguration) -> {
+                            ServerConnector connector = new ServerConnector(server, new HttpConnectionFactory(httpConfiguration));
+                            connector.setHost(ipAddress);
+                            connector.setPort(port);
+                            return connector;
+                        });
+                    }
+                    if (unixSocket != null) {
+                        ConnectorOptions options = connectorOptions != null ? connectorOptions : new ConnectorOptions();
+                        config.jetty.addConnector((server, httpConfiguration) ->
+                            options.createUnixDomain(server, httpConfiguration, unixSocket));
+                    }
+                }
+
+                // Configure static files
+                if (this.staticFiles.externalLocation != null) {
+                    // Check if the directory exists before configuring static files
+                    if (Files.exists(Paths.get(this.staticFiles.externalLocation))) {
+                        config.staticFiles.add(staticFiles -> {
+                            staticFiles.directory = this.staticFiles.externalLocation;
+                            staticFiles.location = Location.EXTERNAL;
+                        });
+                    } else {
+                        System.out.println("Warning: Static file directory '" + this.staticFiles.externalLocation + "' does not exist. Skipping static file configuration.");
+                    }
+                }
+            });
+            
+            if (unixSocket != null) {
+                removeStaleSocket(unixSocket);
+            }
+
+            // Start server with IP address if specified
+            if (!listening()) {
+                // Nothing to listen on, Jetty is never started
+                javalin = javalinBuilder;
+                logger.info("No listener, serving in-process requests only");
+            } else if (ipAddress != null) {
+                javalin = javalinBuilder.start(ipAddress, port);
+            } else {
+                javalin = javalinBuilder.start(port);
+            }
+
+            // Reflect the bound port, so port(0) reports the one picked by the OS
+            if (port >= 0) {
+                port = javalin.port();
+            } else if (unixSocket != null) {
+                logger.info("Listening on unix socket " + unixSocket + " only");
+            }
+
+            // Registered before any user filter, so admission checks always run first
+            javalin.before(this::admit);
+
+            // Looked up by exact class first, so a halt never reaches the hierarchy walk
+            javalin.exception(HaltException.class, (halt, ctx) -> { });
+
+            // Defaults for timed out routes and full bulkheads, replaced by exception(...)
+            javalin.exception(DeadlineExceededException.class, (exception, ctx) -> {
+                if (exception.started()) {
+                    ctx.status(504);
+                    ctx.result("Gateway Timeout");
+                } else {
+                    ctx.status(503);
+                    ctx.header("Retry-After", "1");
+                    ctx.result("Service Unavailable");
+                }
+            });
+            javalin.exception(BulkheadFullException.class, (exception, ctx) -> {
+                ctx.status(503);
+                ctx.header("Retry-After", "1");
+                ctx.result("Service Unavailable");
+            });
+            
+            // Log thread pool configuration if specified
+            if (minThreads != null && maxThreads != null) {
+                logger.info("Thread pool configured: minThreads=" + minThreads + 
+                          ", maxThreads=" + maxThreads + 
+                          (timeoutMillis != null ? ", timeout=" + timeoutMillis : "") +
+                          ", name=" + threadPoolName());
+            }
+            if (connectorOptions != null) {
+                logger.info("Connector configured: " + connectorOptions);
+            }
+            
+            initialized = true;
+        }
+    }
+
+    /**
+     * Deletes a socket file left by a server that is gone, so the path can be bound again.
+     * Anything else at the path, or a socket someone still listens on, is left alone.
+     */
+    static void removeStaleSocket(Path path) {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return;
+        }
+        if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) || Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IllegalStateException("Cannot listen on " + path + ": it exists and is not a socket");
+        }
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(path));
+        } catch (IOException e) {
+            // Nobody is listening: stale
+            try {
+                Files.deleteIfExists(path);
+                return;
+            } catch (IOException deleteFailure) {
+                throw new UncheckedIOException("Cannot remove stale socket " + path, deleteFailure);
+            }
+        }
+        throw new IllegalStateException("Cannot listen on " + path + ": another server is listening on it");
+    }
+
+    private boolean listening() {
+        return port >= 0 || unixSocket != null;
+    }
+
+    private String threadPoolName() {
+        return "JettyServerThreadPool-service" + id;
+    }
+
+    private void stopServer() {
+        // Claimed under the lock, stopped outside it: draining can take the whole shutdown timeout
+        Javalin stopping;
+        CountDownLatch stopped;
+        AccessLog log;
+        synchronized (this) {
+            if (javalin == null || !initialized || draining) {
+                return;
+            }
+            stopping = javalin;
+            stopped = stopLatch;
+            log = accessLog;
+            accessLog = null;
+            draining = true;
+        }
+        if (readinessDelayMillis > 0 && listening()) {
+            logger.info("Readiness failing, stopping server in " + readinessDelayMillis + "ms");
+            try {
+                Thread.sleep(readinessDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("Stopping server, waiting up to " + shutdownTimeoutMillis + "ms for in-flight requests");
+        // Open event streams would otherwise hold up the drain for the whole timeout
+        for (EventStream stream : eventStreams) {
+            stream.stop();
+        }
+        stopping.stop();
+        if (!listening()) {
+            // Jetty never started, so it won't report stopping
+            stopped.countDown();
+        }
+        for (Proxy proxy : proxies) {
+            proxy.stop();
+        }
+        if (log != null) {
+            log.close(shutdownTimeoutMillis);
+        }
+        synchronized (this) {
+            initialized = false;
+        }
+    }
+}
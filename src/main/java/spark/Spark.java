@@ -1,89 +1,296 @@
 package spark;
 
-import io.javalin.Javalin;
-import io.javalin.http.Handler;
-import io.javalin.http.staticfiles.Location;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.util.logging.Logger;
-
+import io.javalin.http.Context;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Static Spark API. Every method delegates to a default Service instance;
+ * use Service.ignite() to run additional independent servers in the same JVM.
+ */
 public class Spark {
-    Logger logger = Logger.getLogger("SparkJavalinBridge");
 
-    private static Spark instance;
-    private Javalin javalin;
+    private static Service instance;
 
     public static StaticFiles staticFiles = new StaticFiles();
 
-    private String ipAddress;
-    private int port = 7070;
-    private boolean initialized = false;
-    
-    // Thread pool configuration
-    private Integer minThreads;
-    private Integer maxThreads;
-    private Integer timeoutMillis;
-
-    public Spark() {
-        logger.info("Spark Javalin Bridge is igniting");
-    }
-
-    public static synchronized Spark getInstance() {
+    public static synchronized Service getInstance() {
         if (instance == null) {
-            instance = new Spark();
+            instance = new Service(staticFiles);
         }
         return instance;
     }
 
     public static void port(int port) {
-        getInstance().setPort(port);
+        getInstance().port(port);
     }
 
     public static int port() {
-        return getInstance().port;
+        return getInstance().port();
     }
 
-    public void setPort(int port) {
-        this.port = port;
+    public static void threadPool(int minThreads, int maxThreads, int timeoutMillis) {
+        getInstance().threadPool(minThreads, maxThreads, timeoutMillis);
     }
 
-    public static void threadPool(int minThreads, int maxThreads, int timeoutMillis) {
-        Spark instance = getInstance();
-        instance.minThreads = minThreads;
-        instance.maxThreads = maxThreads;
-        instance.timeoutMillis = timeoutMillis;
+    /**
+     * Configures the HTTP connector (acceptors, selectors, buffers, timeouts, socket options),
+     * see ConnectorOptions for the defaults. Must be called before any route is added.
+     */
+    public static void connector(ConnectorOptions options) {
+        getInstance().connector(options);
+    }
+
+    /**
+     * Also listens on a Unix domain socket at path, e.g. for a sidecar proxy on the same host.
+     * A stale socket file left at path is replaced. Call port(-1) to listen only on the socket.
+     * Must be called before any route is added.
+     */
+    public static void unixSocket(Path path) {
+        getInstance().unixSocket(path);
+    }
+
+    /**
+     * Sets how long stop() waits for in-flight requests to finish before closing connections.
+     * Defaults to 30 seconds, 0 stops immediately.
+     */
+    public static void shutdownTimeout(int timeoutMillis) {
+        getInstance().shutdownTimeout(timeoutMillis);
+    }
+
+    /**
+     * Registers a GET endpoint that answers 200 while the server is serving
+     * and 503 as soon as a graceful stop has begun, for load balancer readiness probes
+     */
+    public static void readinessCheck(String path) {
+        getInstance().readinessCheck(path);
+    }
+
+    /**
+     * Limits concurrent requests on the routes registered for path with an adaptive limit.
+     * Requests over the limit get an immediate 503 with Retry-After instead of queueing.
+     *
+     * @return the limiter, for monitoring its current limit and rejections
+     */
+    public static ConcurrencyLimiter concurrencyLimit(String path, int initialLimit, int maxLimit) {
+        return getInstance().concurrencyLimit(path, initialLimit, maxLimit);
+    }
+
+    /**
+     * Limits concurrent requests on the routes registered for path with the given limiter
+     */
+    public static void concurrencyLimit(String path, ConcurrencyLimiter limiter) {
+        getInstance().concurrencyLimit(path, limiter);
+    }
+
+    /**
+     * Rate limits requests matching path per client IP address.
+     * Requests over the limit get a 429 with Retry-After before any filter or route runs.
+     *
+     * @return the limiter, for monitoring allowed/rejected counts
+     */
+    public static RateLimiter rateLimit(String path, double permitsPerSecond, int burst) {
+        return getInstance().rateLimit(path, permitsPerSecond, burst);
+    }
+
+    /**
+     * Rate limits requests matching path per client key, e.g. RateLimiter.byHeader("X-Api-Key")
+     *
+     * @return the limiter, for monitoring allowed/rejected counts
+     */
+    public static RateLimiter rateLimit(String path, double permitsPerSecond, int burst,
+                                        Function<Context, String> keyFunction) {
+        return getInstance().rateLimit(path, permitsPerSecond, burst, keyFunction);
+    }
+
+    /**
+     * Logs every request to file (method, route, status, bytes, latency, IP, user agent)
+     * from a background thread, see AccessLog
+     *
+     * @return the log, for monitoring written and dropped entries
+     */
+    public static AccessLog accessLog(Path file) {
+        return getInstance().accessLog(file);
+    }
+
+    /**
+     * Logs every request to file from a background thread, with the given buffer and rotation settings
+     *
+     * @return the log, for monitoring written and dropped entries
+     */
+    public static AccessLog accessLog(Path file, AccessLogOptions options) {
+        return getInstance().accessLog(file, options);
+    }
+
+    /**
+     * @return the pool of direct buffers long route results are written from, for monitoring its hit rate
+     */
+    public static BufferPool responseBuffers() {
+        return getInstance().responseBuffers();
+    }
+
+    /**
+     * Caches the responses of the GET route for path for ttlMillis, keyed on path and query string
+     *
+     * @return the cache, for monitoring hit rates or invalidating it
+     */
+    public static ResponseCache cache(String path, long ttlMillis) {
+        return getInstance().cache(path, ttlMillis);
+    }
+
+    /**
+     * Caches the responses of the GET route for path for ttlMillis under the key built by keyFunction,
+     * see ResponseCache.key(queryParams, headers). Holds up to 64MB of response bodies.
+     *
+     * @return the cache, for monitoring hit rates or invalidating it
+     */
+    public static ResponseCache cache(String path, long ttlMillis, Function<Context, String> keyFunction) {
+        return getInstance().cache(path, ttlMillis, keyFunction);
+    }
+
+    /**
+     * Adds an ETag to 200 responses of the GET route for path, computed by hashing the body,
+     * and answers a matching If-None-Match with 304 and no body
+     */
+    public static void etag(String path) {
+        getInstance().etag(path);
+    }
+
+    /**
+     * Like etag(path), but the tag comes from a cheap version token (e.g. a row version or
+     * last-modified counter), so a matching request is answered before the route renders anything.
+     * When the function returns null the body is hashed instead.
+     */
+    public static void etag(String path, Function<Request, String> versionFunction) {
+        getInstance().etag(path, versionFunction);
+    }
+
+    /**
+     * Runs every route matching path (e.g. "/reports/*") on the given bulkhead instead of the
+     * shared Jetty pool. A bulkhead set with RouteOptions.bulkhead() takes precedence.
+     */
+    public static void bulkhead(String path, Bulkhead bulkhead) {
+        getInstance().bulkhead(path, bulkhead);
+    }
+
+    /**
+     * Interrupts routes that run longer than timeout and answers 504.
+     * Routes can override it with RouteOptions.timeout().
+     */
+    public static void timeout(Duration timeout) {
+        getInstance().timeout(timeout);
     }
 
     public static void ipAddress(String ipAddress) {
-        getInstance().ipAddress = ipAddress;
+        getInstance().ipAddress(ipAddress);
+    }
+
+    public static RouteOptions get(String path, Route route) {
+        return getInstance().get(path, route);
+    }
+
+    public static RouteOptions post(String path, Route route) {
+        return getInstance().post(path, route);
+    }
+
+    public static RouteOptions put(String path, Route route) {
+        return getInstance().put(path, route);
+    }
+
+    public static RouteOptions delete(String path, Route route) {
+        return getInstance().delete(path, route);
+    }
+
+    public static RouteOptions patch(String path, Route route) {
+        return getInstance().patch(path, route);
+    }
+
+    public static RouteOptions options(String path, Route route) {
+        return getInstance().options(path, route);
     }
 
-    public static void get(String path, Route route) {
-        getInstance().addRoute("GET", path, route);
+    public static RouteOptions head(String path, Route route) {
+        return getInstance().head(path, route);
     }
 
-    public static void post(String path, Route route) {
-        getInstance().addRoute("POST", path, route);
+    /**
+     * Adds a GET route whose ModelAndView is rendered by engine straight to the response stream
+     */
+    public static RouteOptions get(String path, TemplateViewRoute route, TemplateEngine engine) {
+        return getInstance().get(path, route, engine);
     }
 
-    public static void put(String path, Route route) {
-        getInstance().addRoute("PUT", path, route);
+    /**
+     * Adds a POST route whose ModelAndView is rendered by engine straight to the response stream
+     */
+    public static RouteOptions post(String path, TemplateViewRoute route, TemplateEngine engine) {
+        return getInstance().post(path, route, engine);
     }
 
-    public static void delete(String path, Route route) {
-        getInstance().addRoute("DELETE", path, route);
+    /**
+     * Adds a WebSocket endpoint handled by an object annotated with Jetty's
+     * {@code @WebSocket} callbacks, shared by all sessions
+     */
+    public static void webSocket(String path, Object handler) {
+        getInstance().webSocket(path, handler);
     }
 
-    public static void patch(String path, Route route) {
-        getInstance().addRoute("PATCH", path, route);
+    /**
+     * Adds a WebSocket endpoint handled by a {@code @WebSocket} annotated class,
+     * instantiated for each session
+     */
+    public static void webSocket(String path, Class<?> handlerClass) {
+        getInstance().webSocket(path, handlerClass);
     }
 
-    public static void options(String path, Route route) {
-        getInstance().addRoute("OPTIONS", path, route);
+    /**
+     * Adds a Server-Sent Events endpoint. handler is called for each client that connects;
+     * publish to the returned stream to send an event to all of them.
+     */
+    public static EventStream sse(String path, SseHandler handler) {
+        return getInstance().sse(path, handler);
+    }
+
+    /**
+     * Forwards every request matching path (e.g. "/api/*") to upstreamBaseUrl with the same
+     * path and query string, streaming bodies both ways over pooled keep-alive connections
+     *
+     * @return the proxy, for monitoring its connection pool and failures
+     */
+    public static Proxy proxy(String path, String upstreamBaseUrl, ProxyOptions options) {
+        return getInstance().proxy(path, upstreamBaseUrl, options);
     }
 
-    public static void head(String path, Route route) {
-        getInstance().addRoute("HEAD", path, route);
+    /**
+     * Like proxy(path, upstreamBaseUrl, options) with default options
+     */
+    public static Proxy proxy(String path, String upstreamBaseUrl) {
+        return getInstance().proxy(path, upstreamBaseUrl);
+    }
+
+    /**
+     * Adds a POST endpoint taking a JSON array of sub-requests ({"method", "path", "headers", "body"})
+     * and answering with a JSON array of their results ({"status", "headers", "body"}). Sub-requests
+     * run in parallel through the same filters and routes, in memory, so a client can
+     * collapse many calls into one round trip.
+     */
+    public static void batch(String path) {
+        getInstance().batch(path);
+    }
+
+    /**
+     * Like batch(path), rejecting batches of more than maxRequests sub-requests with 400
+     */
+    public static void batch(String path, int maxRequests) {
+        getInstance().batch(path, maxRequests);
+    }
+
+    /**
+     * @return a client calling the routes in memory, without a socket
+     */
+    public static LocalClient localClient() {
+        return getInstance().localClient();
     }
 
     public static StaticFiles staticFiles() {
@@ -91,177 +298,79 @@ public class Spark {
     }
 
     public static void before(String path, Filter filter) {
-        getInstance().addFilter("BEFORE", path, filter);
+        getInstance().before(path, filter);
     }
 
     public static void before(Filter filter) {
-        getInstance().addFilter("BEFORE", "/*", filter);
+        getInstance().before(filter);
     }
 
     public static void after(String path, Filter filter) {
-        getInstance().addFilter("AFTER", path, filter);
+        getInstance().after(path, filter);
     }
 
     public static void after(Filter filter) {
-        getInstance().addFilter("AFTER", "/*", filter);
+        getInstance().after(filter);
     }
 
     public static <T extends Exception> void exception(Class<T> exceptionClass, ExceptionHandler<T> handler) {
-        getInstance().addExceptionHandler(exceptionClass, handler);
+        getInstance().exception(exceptionClass, handler);
     }
 
     public static void notFound(Route route) {
-        getInstance().addNotFoundHandler(route);
+        getInstance().notFound(route);
     }
 
     public static void internalServerError(Route route) {
-        getInstance().addInternalServerErrorHandler(route);
-    }
-
-    public static void stop() {
-        getInstance().stopServer();
+        getInstance().internalServerError(route);
     }
 
-    public synchronized static void awaitStop() {
-        getInstance().stopServer();
+    /**
+     * Stops the request immediately with status 200, keeping the body set so far.
+     * After filters still run.
+     */
+    public static HaltException halt() {
+        throw HaltException.of(200, null);
     }
 
-    public static void awaitInitialization() {
-        getInstance().initializeServer();
-    }
-
-    private void addRoute(String method, String path, Route route) {
-        ensureInitialized();
-        
-        // Convert Spark-style path parameters (:param) to Javalin-style ({param})
-        String javalinPath = convertSparkPathToJavalinPath(path);
-        
-        Handler handler = ctx -> {
-            Request request = new Request(ctx);
-            Response response = new Response(ctx);
-            Object result = route.handle(request, response);
-            if (result != null && !response.isRedirected()) {
-                ctx.result(result.toString());
-            }
-        };
-
-        switch (method.toUpperCase()) {
-            case "GET" -> javalin.get(javalinPath, handler);
-            case "POST" -> javalin.post(javalinPath, handler);
-            case "PUT" -> javalin.put(javalinPath, handler);
-            case "DELETE" -> javalin.delete(javalinPath, handler);
-            case "PATCH" -> javalin.patch(javalinPath, handler);
-            case "OPTIONS" -> javalin.options(javalinPath, handler);
-            case "HEAD" -> javalin.head(javalinPath, handler);
-        }
+    /**
+     * Stops the request immediately with the given status, e.g. halt(401) in an auth filter
+     */
+    public static HaltException halt(int status) {
+        throw HaltException.of(status, null);
     }
 
     /**
-     * Converts Spark-style path parameters (:param) to Javalin-style ({param})
+     * Stops the request immediately with status 200 and the given body
      */
-    private String convertSparkPathToJavalinPath(String sparkPath) {
-        // Replace :param with {param}
-        return sparkPath.replaceAll(":([^/]+)", "{$1}");
+    public static HaltException halt(String body) {
+        throw HaltException.of(200, body);
     }
 
-    private void addFilter(String type, String path, Filter filter) {
-        ensureInitialized();
-        
-        // Convert Spark-style path parameters (:param) to Javalin-style ({param})
-        String javalinPath = convertSparkPathToJavalinPath(path);
-        
-        Handler handler = ctx -> {
-            Request request = new Request(ctx);
-            Response response = new Response(ctx);
-            filter.handle(request, response);
-        };
-
-        if ("BEFORE".equals(type)) {
-            javalin.before(javalinPath, handler);
-        } else if ("AFTER".equals(type)) {
-            javalin.after(javalinPath, handler);
-        }
+    /**
+     * Stops the request immediately with the given status and body.
+     * After filters still run; the remaining before filters and the route don't.
+     */
+    public static HaltException halt(int status, String body) {
+        throw HaltException.of(status, body);
     }
 
-    private <T extends Exception> void addExceptionHandler(Class<T> exceptionClass, ExceptionHandler<T> handler) {
-        ensureInitialized();
-        javalin.exception(exceptionClass, (exception, ctx) -> {
-            Request request = new Request(ctx);
-            Response response = new Response(ctx);
-            handler.handle(exception, request, response);
-        });
-    }
-
-    private void addNotFoundHandler(Route route) {
-        ensureInitialized();
-        javalin.error(404, ctx -> {
-            Request request = new Request(ctx);
-            Response response = new Response(ctx);
-            Object result = route.handle(request, response);
-            if (result != null) {
-                ctx.result(result.toString());
-            }
-        });
-    }
-
-    private void addInternalServerErrorHandler(Route route) {
-        ensureInitialized();
-        javalin.error(500, ctx -> {
-            Request request = new Request(ctx);
-            Response response = new Response(ctx);
-            Object result = route.handle(request, response);
-            if (result != null) {
-                ctx.result(result.toString());
-            }
-        });
-    }
-
-    private void ensureInitialized() {
-        if (!initialized) {
-            initializeServer();
-        }
+    /**
+     * Gracefully stops the server: readiness flips to failing, no new connections are accepted,
+     * in-flight requests get up to the shutdown timeout to finish, then connections are closed
+     */
+    public static void stop() {
+        getInstance().stop();
     }
 
-    public synchronized void initializeServer() {
-        if (!initialized) {
-            // Create Javalin instance with configuration
-            var javalinBuilder = Javalin.create(config -> {
-                // Configure static files
-                if (staticFiles.externalLocation != null) {
-                    // Check if the directory exists before configuring static files
-                    if (Files.exists(Paths.get(Spark.staticFiles.externalLocation))) {
-                        config.staticFiles.add(staticFiles -> {
-                            staticFiles.directory = Spark.staticFiles.externalLocation;
-                            staticFiles.location = Location.EXTERNAL;
-                        });
-                    } else {
-                        System.out.println("Warning: Static file directory '" + staticFiles.externalLocation + "' does not exist. Skipping static file configuration.");
-                    }
-                }
-            });
-            
-            // Start server with IP address if specified
-            if (ipAddress != null) {
-                javalin = javalinBuilder.start(ipAddress, port);
-            } else {
-                javalin = javalinBuilder.start(port);
-            }
-            
-            // Log thread pool configuration if specified
-            if (minThreads != null && maxThreads != null) {
-                logger.info("Thread pool configured: minThreads=" + minThreads + 
-                          ", maxThreads=" + maxThreads + 
-                          (timeoutMillis != null ? ", timeout=" + timeoutMillis : ""));
-            }
-            
-            initialized = true;
-        }
+    /**
+     * Blocks until the server has been stopped, e.g. by stop() from another thread
+     */
+    public static void awaitStop() {
+        getInstance().awaitStop();
     }
 
-    private void stopServer() {
-        if (javalin != null) {
-            javalin.stop();
-            initialized = false;
-        }
+    public static void awaitInitialization() {
+        getInstance().awaitInitialization();
     }
 }
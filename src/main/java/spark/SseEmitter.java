@@ -0,0 +1,140 @@
+package spark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One Server-Sent Events client.
+ *
+ * Events are queued, not written: the stream flushes every client's queue once per flush
+ * interval in a single write, so bursts of events cost one flush instead of one each.
+ * A client whose queue passes the stream's limit is disconnected; it reconnects with
+ * Last-Event-ID and catches up from the replay ring. Closing always happens outside
+ * a flush, by whichever thread holds the flush claim.
+ */
+public class SseEmitter {
+
+    private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final OutputStream output;
+    private final String lastEventId;
+    private final int maxQueued;
+    private final ConcurrentLinkedQueue<byte[]> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+    private volatile boolean closeRequested;
+    private volatile long lastWriteNanos = System.nanoTime();
+
+    SseEmitter(OutputStream output, String lastEventId, int maxQueued) {
+        this.output = output;
+        this.lastEventId = lastEventId;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * Sends an unnamed event to this client only
+     */
+    public void send(String data) {
+        enqueue(EventStream.encode(null, null, data));
+    }
+
+    /**
+     * Sends a named event to this client only
+     */
+    public void send(String event, String data) {
+        enqueue(EventStream.encode(null, event, data));
+    }
+
+    /**
+     * @return the Last-Event-ID the client reconnected with, or null on a first connect
+     */
+    public String lastEventId() {
+        return lastEventId;
+    }
+
+    public boolean isClosed() {
+        return closed.isDone();
+    }
+
+    /**
+     * Runs action once the client disconnects or the emitter is closed
+     */
+    public void onClose(Runnable action) {
+        closed.thenRun(action);
+    }
+
+    /**
+     * Ends the event stream for this client, once a flush in progress has finished
+     */
+    public void close() {
+        closeRequested = true;
+        if (flushing.compareAndSet(false, true)) {
+            closed.complete(null);
+        }
+    }
+
+    void enqueue(byte[] event) {
+        if (closeRequested) {
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            // Called under the stream's lock on the publisher's thread, so the writer closes it
+            closeRequested = true;
+            return;
+        }
+        queue.add(event);
+    }
+
+    CompletableFuture<Void> closed() {
+        return closed;
+    }
+
+    /**
+     * Claims the right to flush, so at most one flush per client is in progress
+     */
+    boolean needsFlush(long nowNanos, long heartbeatNanos) {
+        if (isClosed() || (!closeRequested && queue.isEmpty() && nowNanos - lastWriteNanos < heartbeatNanos)) {
+            return false;
+        }
+        return flushing.compareAndSet(false, true);
+    }
+
+    /**
+     * Writes everything queued, or a heartbeat comment if nothing is, then flushes once.
+     * Closes instead if that was requested.
+     */
+    void flush() {
+        if (closeRequested) {
+            closed.complete(null);
+            return;
+        }
+        try {
+            byte[] event = queue.poll();
+            if (event == null) {
+                output.write(HEARTBEAT);
+            }
+            while (event != null) {
+                queued.decrementAndGet();
+                output.write(event);
+                event = queue.poll();
+            }
+            output.flush();
+            lastWriteNanos = System.nanoTime();
+        } catch (IOException e) {
+            // Client went away
+            closeRequested = true;
+        } finally {
+            flushing.set(false);
+            // A close() that found the claim taken left the closing to this flush
+            if (closeRequested && flushing.compareAndSet(false, true)) {
+                closed.complete(null);
+            }
+        }
+    }
+}
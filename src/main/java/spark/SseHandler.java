@@ -0,0 +1,18 @@
+package spark;
+
+/**
+ * Server-Sent Events handler, invoked once when a client connects
+ */
+@FunctionalInterface
+public interface SseHandler {
+
+    /**
+     * Invoked when a client opens the event stream. The connection stays open after this returns;
+     * keep the emitter to send events to this client, or publish to the EventStream for everyone.
+     *
+     * @param request The request object providing information about the HTTP request
+     * @param emitter Sends events to this client
+     */
+    void handle(Request request, SseEmitter emitter) throws Exception;
+
+}
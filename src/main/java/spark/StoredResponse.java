@@ -0,0 +1,119 @@
+package spark;
+
+import io.javalin.http.Context;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Snapshot of a rendered response (status, headers and body bytes) that can be replayed later
+ */
+public final class StoredResponse {
+
+    private final int status;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final String fingerprint;
+
+    /**
+     * @param headers every value of each header, in the order they were set
+     */
+    public StoredResponse(int status, Map<String, List<String>> headers, byte[] body) {
+        this(status, headers, body, null);
+    }
+
+    /**
+     * @param fingerprint identifies the request that produced the response, see fingerprint()
+     */
+    public StoredResponse(int status, Map<String, List<String>> headers, byte[] body, String fingerprint) {
+        Map<String, List<String>> copy = new LinkedHashMap<>();
+        headers.forEach((name, values) -> copy.put(name, List.copyOf(values)));
+        this.status = status;
+        this.headers = Collections.unmodifiableMap(copy);
+        this.body = body;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * @return the headers on ctx's response, taken before the route runs so capture() can
+     * tell the ones the route set from those of filters (request ids, CORS, ...)
+     */
+    static Map<String, List<String>> headers(Context ctx) {
+        Map<String, List<String>> headers = new HashMap<>();
+        for (String name : ctx.res().getHeaderNames()) {
+            headers.put(name.toLowerCase(Locale.ROOT), List.copyOf(ctx.res().getHeaders(name)));
+        }
+        return headers;
+    }
+
+    /**
+     * Snapshots the response currently held by ctx, restoring the body stream it consumes.
+     * Only headers the route set or changed since before = headers(ctx) are kept, so a replay
+     * leaves the headers filters set for the request being answered alone; Content-Length,
+     * Date and Set-Cookie are left out since they must not be replayed.
+     */
+    static StoredResponse capture(Context ctx, Map<String, List<String>> before) throws Exception {
+        return capture(ctx, before, null);
+    }
+
+    static StoredResponse capture(Context ctx, Map<String, List<String>> before, String fingerprint) throws Exception {
+        byte[] body;
+        try (InputStream result = ctx.resultInputStream()) {
+            body = result != null ? result.readAllBytes() : new byte[0];
+        }
+        ctx.result(body);
+
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : ctx.res().getHeaderNames()) {
+            if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Date")
+                    || name.equalsIgnoreCase("Set-Cookie")) {
+                continue;
+            }
+            // Keeps repeated headers such as Vary or Link whole
+            List<String> values = List.copyOf(ctx.res().getHeaders(name));
+            if (!values.equals(before.get(name.toLowerCase(Locale.ROOT)))) {
+                headers.put(name, values);
+            }
+        }
+        return new StoredResponse(ctx.statusCode(), headers, body, fingerprint);
+    }
+
+    /**
+     * Writes this response to ctx
+     */
+    void writeTo(Context ctx) {
+        ctx.status(status);
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            List<String> values = header.getValue();
+            ctx.header(header.getKey(), values.get(0));
+            for (int i = 1; i < values.size(); i++) {
+                ctx.res().addHeader(header.getKey(), values.get(i));
+            }
+        }
+        ctx.result(body);
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public Map<String, List<String>> headers() {
+        return headers;
+    }
+
+    public byte[] body() {
+        return body;
+    }
+
+    /**
+     * @return hash of the request that produced the response (target and body), so a reused
+     * Idempotency-Key can be told apart from a retry; null when not recorded
+     */
+    public String fingerprint() {
+        return fingerprint;
+    }
+}
@@ -0,0 +1,32 @@
+package spark;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Renders the ModelAndView returned by a TemplateViewRoute.
+ * Engines that can write incrementally override render(modelAndView, out), which the
+ * template routes call with a writer on the response stream; see CompiledTemplateEngine.
+ */
+public abstract class TemplateEngine {
+
+    public ModelAndView modelAndView(Object model, String viewName) {
+        return new ModelAndView(model, viewName);
+    }
+
+    /**
+     * Renders object, which must be a ModelAndView
+     */
+    public String render(Object object) {
+        return render((ModelAndView) object);
+    }
+
+    public abstract String render(ModelAndView modelAndView);
+
+    /**
+     * Renders straight to out. The default renders to a String first.
+     */
+    public void render(ModelAndView modelAndView, Writer out) throws IOException {
+        out.write(render(modelAndView));
+    }
+}
@@ -0,0 +1,20 @@
+package spark;
+
+/**
+ * A route whose result is rendered by a TemplateEngine, e.g.
+ * get("/hello", (request, response) -> new ModelAndView(model, "hello.html"), engine)
+ */
+@FunctionalInterface
+public interface TemplateViewRoute {
+
+    /**
+     * Invoked when a request is made on this route's corresponding path
+     *
+     * @param request  The request object providing information about the HTTP request
+     * @param response The response object providing functionality for modifying the response
+     * @return The model and view to render, or null to render nothing
+     * @throws Exception when handle fails
+     */
+    ModelAndView handle(Request request, Response response) throws Exception;
+
+}
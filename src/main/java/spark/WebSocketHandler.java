@@ -0,0 +1,159 @@
+package spark;
+
+import io.javalin.websocket.WsConfig;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketError;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
+
+/**
+ * Adapts a Spark-style WebSocket handler, an object annotated with Jetty's
+ * {@code @OnWebSocketConnect}, {@code @OnWebSocketMessage}, {@code @OnWebSocketClose} and
+ * {@code @OnWebSocketError}, to Javalin's WebSocket callbacks.
+ * The annotated methods are resolved once into method handles at registration.
+ * As in Spark, a handler object is shared by all sessions and a handler class
+ * is instantiated per session.
+ */
+final class WebSocketHandler {
+
+    private static final MethodType CONNECT = MethodType.methodType(void.class, Object.class, Session.class);
+    private static final MethodType TEXT = MethodType.methodType(void.class, Object.class, Session.class, String.class);
+    private static final MethodType BINARY = MethodType.methodType(void.class, Object.class, Session.class, byte[].class, int.class, int.class);
+    private static final MethodType CLOSE = MethodType.methodType(void.class, Object.class, Session.class, int.class, String.class);
+    private static final MethodType ERROR = MethodType.methodType(void.class, Object.class, Session.class, Throwable.class);
+
+    private final Object shared;
+    private final MethodHandle constructor;
+    private final Map<Session, Object> instances = new ConcurrentHashMap<>();
+
+    private final MethodHandle onConnect;
+    private final MethodHandle onText;
+    private final MethodHandle onBinary;
+    private final MethodHandle onClose;
+    private final MethodHandle onError;
+
+    WebSocketHandler(Object handler) {
+        this(handler.getClass(), handler);
+    }
+
+    WebSocketHandler(Class<?> handlerClass) {
+        this(handlerClass, null);
+    }
+
+    private WebSocketHandler(Class<?> handlerClass, Object shared) {
+        this.shared = shared;
+        if (shared == null) {
+            try {
+                this.constructor = MethodHandles.publicLookup()
+                    .findConstructor(handlerClass, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("WebSocket handler " + handlerClass.getName()
+                    + " needs a public no-argument constructor", e);
+            }
+        } else {
+            this.constructor = null;
+        }
+
+        MethodHandle connect = null;
+        MethodHandle text = null;
+        MethodHandle binary = null;
+        MethodHandle close = null;
+        MethodHandle error = null;
+        for (Method method : handlerClass.getMethods()) {
+            if (has(method, OnWebSocketConnect.class)) {
+                connect = resolve(method, CONNECT);
+            } else if (has(method, OnWebSocketMessage.class)) {
+                if (method.getParameterCount() == 2) {
+                    text = resolve(method, TEXT);
+                } else {
+                    binary = resolve(method, BINARY);
+                }
+            } else if (has(method, OnWebSocketClose.class)) {
+                close = resolve(method, CLOSE);
+            } else if (has(method, OnWebSocketError.class)) {
+                error = resolve(method, ERROR);
+            }
+        }
+        this.onConnect = connect;
+        this.onText = text;
+        this.onBinary = binary;
+        this.onClose = close;
+        this.onError = error;
+    }
+
+    private static boolean has(Method method, Class<? extends Annotation> annotation) {
+        return method.isAnnotationPresent(annotation);
+    }
+
+    private static MethodHandle resolve(Method method, MethodType expected) {
+        try {
+            return MethodHandles.publicLookup().unreflect(method).asType(expected);
+        } catch (IllegalAccessException | WrongMethodTypeException e) {
+            throw new IllegalArgumentException("Unsupported WebSocket handler method " + method
+                + ", expected parameters " + expected.dropParameterTypes(0, 1).parameterList(), e);
+        }
+    }
+
+    void configure(WsConfig ws) {
+        ws.onConnect(ctx -> call(() -> {
+            Object handler = shared;
+            if (handler == null) {
+                handler = (Object) constructor.invokeExact();
+                instances.put(ctx.session, handler);
+            }
+            if (onConnect != null) {
+                onConnect.invokeExact(handler, ctx.session);
+            }
+        }));
+        if (onText != null) {
+            ws.onMessage(ctx -> call(() -> {
+                onText.invokeExact(handler(ctx.session), ctx.session, ctx.message());
+            }));
+        }
+        if (onBinary != null) {
+            ws.onBinaryMessage(ctx -> call(() -> {
+                onBinary.invokeExact(handler(ctx.session), ctx.session, ctx.data(), ctx.offset(), ctx.length());
+            }));
+        }
+        ws.onClose(ctx -> call(() -> {
+            Object handler = shared != null ? shared : instances.remove(ctx.session);
+            if (onClose != null && handler != null) {
+                onClose.invokeExact(handler, ctx.session, ctx.status(), ctx.reason());
+            }
+        }));
+        if (onError != null) {
+            ws.onError(ctx -> call(() -> {
+                onError.invokeExact(handler(ctx.session), ctx.session, ctx.error());
+            }));
+        }
+    }
+
+    private Object handler(Session session) {
+        return shared != null ? shared : instances.get(session);
+    }
+
+    @FunctionalInterface
+    private interface Invocation {
+        void run() throws Throwable;
+    }
+
+    private static void call(Invocation invocation) {
+        try {
+            invocation.run();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+}
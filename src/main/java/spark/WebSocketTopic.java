@@ -0,0 +1,169 @@
+package spark;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+/**
+ * Fans messages out to the WebSocket sessions subscribed to a topic, e.g.
+ * <pre>
+ * WebSocketTopic prices = new WebSocketTopic("prices", 64, WebSocketTopic.Policy.DROP);
+ * // in @OnWebSocketConnect:  prices.subscribe(session);
+ * prices.publish(json);
+ * </pre>
+ * A published binary message is sent to every session as a read-only view of the same buffer,
+ * so fan-out costs a frame header per session rather than a copy; text is encoded per session.
+ * Sends are asynchronous; each session may have at most maxQueued messages not yet written
+ * to its socket, and a slow consumer over that bound either misses messages (DROP) or
+ * is closed with 1008 (DISCONNECT) so it can reconnect and resynchronize.
+ */
+public class WebSocketTopic {
+
+    /**
+     * What happens to a session whose outbound queue is full
+     */
+    public enum Policy {
+        DROP, DISCONNECT
+    }
+
+    private final String name;
+    private final int maxQueued;
+    private final Policy policy;
+    private final Map<Session, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+
+    /**
+     * @param maxQueued  messages a session may have pending before the policy applies
+     * @param policy     DROP or DISCONNECT for sessions that can't keep up
+     */
+    public WebSocketTopic(String name, int maxQueued, Policy policy) {
+        if (maxQueued < 1) {
+            throw new IllegalArgumentException("maxQueued must be >= 1");
+        }
+        this.name = name;
+        this.maxQueued = maxQueued;
+        this.policy = policy;
+    }
+
+    public void subscribe(Session session) {
+        subscribers.computeIfAbsent(session, Subscriber::new);
+    }
+
+    public void unsubscribe(Session session) {
+        subscribers.remove(session);
+    }
+
+    /**
+     * Sends a text message to every subscribed session
+     */
+    public void publish(String message) {
+        published.incrementAndGet();
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.send(message, null);
+        }
+    }
+
+    /**
+     * Sends a binary message to every subscribed session
+     */
+    public void publish(byte[] message) {
+        published.incrementAndGet();
+        ByteBuffer shared = ByteBuffer.wrap(message).asReadOnlyBuffer();
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.send(null, shared);
+        }
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    /**
+     * @return messages published to the topic
+     */
+    public long published() {
+        return published.get();
+    }
+
+    /**
+     * @return per-session messages skipped because the session's queue was full
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return sessions closed because their queue was full
+     */
+    public long disconnected() {
+        return disconnected.get();
+    }
+
+    @Override
+    public String toString() {
+        return "WebSocketTopic[" + name + ", subscribers=" + subscribers() + ", published=" + published() +
+            ", dropped=" + dropped() + ", disconnected=" + disconnected() + "]";
+    }
+
+    private final class Subscriber implements WriteCallback {
+
+        final Session session;
+        final RemoteEndpoint remote;
+        final AtomicInteger queued = new AtomicInteger();
+
+        Subscriber(Session session) {
+            this.session = session;
+            this.remote = session.getRemote();
+        }
+
+        /**
+         * Sends text if it isn't null, otherwise the shared binary message
+         */
+        void send(String text, ByteBuffer shared) {
+            if (!session.isOpen()) {
+                unsubscribe(session);
+                return;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                if (policy == Policy.DROP) {
+                    dropped.incrementAndGet();
+                } else if (subscribers.remove(session) != null) {
+                    disconnected.incrementAndGet();
+                    session.close(StatusCode.POLICY_VIOLATION, "Too slow, dropped from topic " + name);
+                }
+                return;
+            }
+            if (text != null) {
+                remote.sendString(text, this);
+            } else {
+                // Each send gets its own position/limit over the shared bytes
+                remote.sendBytes(shared.duplicate(), this);
+            }
+        }
+
+        @Override
+        public void writeSuccess() {
+            queued.decrementAndGet();
+        }
+
+        @Override
+        public void writeFailed(Throwable failure) {
+            queued.decrementAndGet();
+            unsubscribe(session);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Access log entries written by the background writer, rotation and dropping when full
+ */
+public class AccessLogTest {
+
+    private Path directory;
+    private Service service;
+    private LocalClient client;
+
+    @Before
+    public void startService() throws IOException {
+        directory = Files.createTempDirectory("access-log");
+        service = Service.ignite().port(-1);
+        service.get("/users/:id", (request, response) -> "user " + request.params(":id"));
+        client = service.localClient();
+    }
+
+    @After
+    public void stopService() throws IOException {
+        service.stop();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void writesOneLinePerRequest() throws Exception {
+        AccessLog log = service.accessLog(directory.resolve("access.log"),
+            new AccessLogOptions().flushInterval(Duration.ofMillis(5)));
+        client.request("GET", "/users/42", Map.of("User-Agent", "test \"agent\""), null);
+        client.get("/missing");
+        awaitAtLeast(2, log::written);
+
+        List<String> lines = Files.readAllLines(log.file());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).matches(
+            "\\S+Z \\S+ GET /users/\\{id} 200 7 \\d+\\.\\d\\dms \"test \\\\\"agent\\\\\"\""));
+        assertTrue(lines.get(1), lines.get(1).contains(" GET - 404 "));
+    }
+
+    @Test
+    public void rotatesBySize() throws Exception {
+        AccessLog log = service.accessLog(directory.resolve("access.log"),
+            new AccessLogOptions().flushInterval(Duration.ofMillis(5)).maxFileBytes(100).maxFiles(2));
+        for (int i = 0; i < 10; i++) {
+            client.get("/users/" + i);
+            awaitAtLeast(i + 1, log::written);
+        }
+        assertTrue(log.rotations() >= 3);
+        assertTrue(Files.exists(directory.resolve("access.log.1")));
+        assertTrue(Files.exists(directory.resolve("access.log.2")));
+        assertTrue(Files.notExists(directory.resolve("access.log.3")));
+    }
+
+    @Test
+    public void dropsEntriesWhenFull() throws Exception {
+        AccessLog log = service.accessLog(directory.resolve("access.log"),
+            new AccessLogOptions().capacity(2).flushInterval(Duration.ofSeconds(30)));
+        Thread.sleep(50);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(200, client.get("/users/" + i).status());
+        }
+        assertEquals(3, log.dropped());
+        service.stop();
+        // Stopping writes what's buffered
+        assertEquals(2, log.written());
+        assertEquals(2, Files.readAllLines(log.file()).size());
+    }
+
+    private static void awaitAtLeast(long expected, LongSupplier actual) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (actual.getAsLong() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(actual.getAsLong() >= expected);
+    }
+}
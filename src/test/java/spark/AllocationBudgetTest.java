@@ -0,0 +1,141 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static spark.Spark.*;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Enforces a heap allocation budget per request through the full bridge pipeline.
+ *
+ * Allocation is summed over the Jetty server threads with ThreadMXBean, so it covers
+ * request parsing, Javalin dispatch, the Spark wrappers and response writing, but not
+ * the client. The pool is pinned to a fixed size so no thread exits, taking its allocation
+ * with it, mid-measurement. Budgets sit comfortably above the measured values; a failure means a
+ * change added allocations on the request path, not that the numbers are flaky.
+ */
+public class AllocationBudgetTest {
+
+    private static final int WARMUP_REQUESTS = 3000;
+    private static final int MEASURED_REQUESTS = 1000;
+    private static final String BOUNDARY = "----sparkbridge";
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static HttpClient client;
+
+    @BeforeClass
+    public static void startServer() {
+        port(0);
+        threadPool(16, 16, 600_000);
+
+        get("/plain", (request, response) -> "Hello World!");
+
+        before("/filtered", (request, response) -> request.attribute("user", request.headers("Authorization")));
+        before("/filtered", (request, response) -> response.type("text/plain"));
+        get("/filtered", (request, response) -> "Hello " + request.attribute("user"));
+        after("/filtered", (request, response) -> response.header("X-Filtered", "true"));
+
+        get("/session", (request, response) -> {
+            Integer count = request.session("count");
+            request.session("count", count == null ? 1 : count + 1);
+            return "Session count: " + request.session("count");
+        });
+
+        post("/upload", (request, response) -> {
+            PartWrapper part = request.getPart("file");
+            return part != null ? "Uploaded " + part.getSize() + " bytes" : "No file";
+        });
+
+        awaitInitialization();
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        stop();
+    }
+
+    @Test
+    public void plainGet() throws Exception {
+        assertBudget("plain GET", 44_000, HttpRequest.newBuilder(uri("/plain")).build());
+    }
+
+    @Test
+    public void getWithThreeFilters() throws Exception {
+        assertBudget("GET with 3 filters", 45_000, HttpRequest.newBuilder(uri("/filtered"))
+            .header("Authorization", "Bearer token")
+            .build());
+    }
+
+    @Test
+    public void sessionGet() throws Exception {
+        assertBudget("session GET", 46_000, HttpRequest.newBuilder(uri("/session")).build());
+    }
+
+    @Test
+    public void multipartPost() throws Exception {
+        String body = "--" + BOUNDARY + "\r\n"
+            + "Content-Disposition: form-data; name=\"file\"; filename=\"hello.txt\"\r\n"
+            + "Content-Type: text/plain\r\n\r\n"
+            + "hello multipart\r\n"
+            + "--" + BOUNDARY + "--\r\n";
+        assertBudget("multipart POST", 85_000, HttpRequest.newBuilder(uri("/upload"))
+            .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+            .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+            .build());
+    }
+
+    private void assertBudget(String name, long budgetBytes, HttpRequest request) throws Exception {
+        send(request, WARMUP_REQUESTS);
+
+        Map<Long, Long> before = serverAllocatedBytes();
+        send(request, MEASURED_REQUESTS);
+        Map<Long, Long> after = serverAllocatedBytes();
+        long allocated = 0;
+        for (Map.Entry<Long, Long> thread : after.entrySet()) {
+            allocated += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        assertTrue("server threads exited during the measurement", after.keySet().containsAll(before.keySet()));
+        long perRequest = allocated / MEASURED_REQUESTS;
+
+        assertTrue(name + " allocated " + perRequest + " bytes/request, budget is " + budgetBytes,
+            perRequest <= budgetBytes);
+    }
+
+    private void send(HttpRequest request, int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            assertEquals(200, response.statusCode());
+        }
+    }
+
+    /**
+     * Bytes allocated so far by each of Jetty's server threads, by thread id
+     */
+    private static Map<Long, Long> serverAllocatedBytes() {
+        Map<Long, Long> allocated = new HashMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("JettyServerThreadPool")) {
+                allocated.put(thread.threadId(), Math.max(0, THREADS.getThreadAllocatedBytes(thread.threadId())));
+            }
+        }
+        return allocated;
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + port() + path);
+    }
+}
@@ -0,0 +1,157 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Sends batches to /batch and checks each sub-request went through filters, routes and exception handlers
+ */
+public class BatchTest {
+
+    private static Service service;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeClass
+    public static void startServer() {
+        service = Service.ignite().port(0);
+        service.before("/*", (request, response) -> {
+            if (request.headers("Authorization") == null) {
+                throw new IllegalStateException("no credentials");
+            }
+        });
+        service.after("/*", (request, response) -> response.header("X-After", "1"));
+        service.exception(IllegalStateException.class, (exception, request, response) -> {
+            response.status(401);
+            response.body(exception.getMessage());
+        });
+        service.get("/users/:id", (request, response) -> "user " + request.params(":id"));
+        service.get("/tags", (request, response) -> String.join(",", Collections.list(request.raw().getContext().req().getHeaders("X-Tag"))));
+        service.post("/echo", (request, response) -> request.contentType() + " " + request.body());
+        service.get("/slow", (request, response) -> {
+            Thread.sleep(300);
+            return "done";
+        });
+        service.post("/login", (request, response) -> {
+            request.context().sessionAttribute("user", request.body());
+            return "welcome";
+        });
+        service.get("/me", (request, response) -> {
+            String user = request.context().sessionAttribute("user");
+            return user != null ? user : "anonymous";
+        });
+        service.batch("/batch");
+        service.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        service.stop();
+    }
+
+    @Test
+    public void dispatchesEachRequestThroughFiltersAndRoutes() throws Exception {
+        List<?> results = batch("Bearer token", "[" +
+            "{\"path\": \"/users/1\"}," +
+            "{\"method\": \"POST\", \"path\": \"/echo\", \"headers\": {\"Content-Type\": \"application/json\"}, \"body\": {\"a\": 1}}," +
+            "{\"path\": \"/missing\"}]");
+
+        assertEquals(3, results.size());
+        Map<?, ?> user = (Map<?, ?>) results.get(0);
+        assertEquals(200L, user.get("status"));
+        assertEquals("user 1", user.get("body"));
+        assertEquals("1", ((Map<?, ?>) user.get("headers")).get("X-After"));
+        assertEquals("application/json {\"a\":1}", ((Map<?, ?>) results.get(1)).get("body"));
+        assertEquals(404L, ((Map<?, ?>) results.get(2)).get("status"));
+    }
+
+    @Test
+    public void subRequestsCanOverrideInheritedHeaders() throws Exception {
+        List<?> results = batch("Bearer token", "[{\"path\": \"/users/1\", \"headers\": {\"Authorization\": \"\"}}]");
+        assertEquals(200L, ((Map<?, ?>) results.get(0)).get("status"));
+
+        // Without credentials the filter's exception goes to the exception handler, per sub-request
+        HttpResponse<String> response = send(null, "[]");
+        assertEquals(401, response.statusCode());
+    }
+
+    @Test
+    public void inheritsEveryValueOfARepeatedHeader() throws Exception {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + service.port() + "/batch"))
+            .header("Authorization", "Bearer token")
+            .header("X-Tag", "a")
+            .header("X-Tag", "b")
+            .POST(HttpRequest.BodyPublishers.ofString("[{\"path\": \"/tags\"}]")).build(), HttpResponse.BodyHandlers.ofString());
+        List<?> results = (List<?>) Json.parse(new StringReader(response.body()));
+        assertEquals("a,b", ((Map<?, ?>) results.get(0)).get("body"));
+    }
+
+    @Test
+    public void sharesTheBatchRequestsSession() throws Exception {
+        HttpClient browser = HttpClient.newBuilder().cookieHandler(new CookieManager()).build();
+        HttpResponse<String> login = send(browser, "Bearer token", "[{\"method\": \"POST\", \"path\": \"/login\", \"body\": \"ada\"}]");
+        assertEquals(200, login.statusCode());
+        assertTrue(login.headers().firstValue("Set-Cookie").isPresent());
+
+        HttpResponse<String> me = send(browser, "Bearer token", "[{\"path\": \"/me\"}]");
+        List<?> results = (List<?>) Json.parse(new StringReader(me.body()));
+        assertEquals("ada", ((Map<?, ?>) results.get(0)).get("body"));
+        assertEquals("anonymous", ((Map<?, ?>) batch("Bearer token", "[{\"path\": \"/me\"}]").get(0)).get("body"));
+    }
+
+    @Test
+    public void runsSubRequestsInParallel() throws Exception {
+        long start = System.nanoTime();
+        List<?> results = batch("Bearer token", "[{\"path\": \"/slow\"}, {\"path\": \"/slow\"}, {\"path\": \"/slow\"}, {\"path\": \"/slow\"}]");
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(4, results.size());
+        assertTrue("took " + millis + "ms", millis < 1000);
+    }
+
+    @Test
+    public void rejectsMalformedBatches() throws Exception {
+        assertEquals(400, send("Bearer token", "{\"path\": \"/users/1\"}").statusCode());
+        assertEquals(400, send("Bearer token", "[{").statusCode());
+        assertEquals(400, send("Bearer token", "[".repeat(200_000)).statusCode());
+    }
+
+    @Test
+    public void rejectsOversizedBatches() throws Exception {
+        assertEquals(400, send("Bearer token", "[" + "{\"path\": \"/users/1\"},".repeat(50) + "{\"path\": \"/users/1\"}]").statusCode());
+        assertEquals(413, send("Bearer token", "[\"" + "x".repeat(1_100_000) + "\"]").statusCode());
+    }
+
+    private static List<?> batch(String authorization, String body) throws Exception {
+        HttpResponse<String> response = send(authorization, body);
+        assertEquals(200, response.statusCode());
+        return (List<?>) Json.parse(new StringReader(response.body()));
+    }
+
+    private static HttpResponse<String> send(String authorization, String body) throws IOException, InterruptedException {
+        return send(client, authorization, body);
+    }
+
+    private static HttpResponse<String> send(HttpClient client, String authorization, String body)
+        throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + service.port() + "/batch"))
+            .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
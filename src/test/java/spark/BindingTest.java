@@ -0,0 +1,136 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Binding JSON and form bodies to records and POJOs
+ */
+public class BindingTest {
+
+    enum Size { SMALL, LARGE }
+
+    record Item(String sku, int quantity, BigDecimal price) {
+    }
+
+    record Order(long id, Size size, List<Item> items, Map<String, String> notes, boolean gift) {
+    }
+
+    static class Signup {
+        private String email;
+        private int age;
+        private List<String> topics;
+
+        public void setEmail(String email) {
+            this.email = email;
+        }
+    }
+
+    private static Service service;
+    private static LocalClient client;
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(-1);
+        service.post("/orders", (request, response) -> {
+            Order order = request.bodyAs(Order.class);
+            return order.id() + " " + order.size() + " " + order.items() + " " + order.notes() + " " + order.gift();
+        });
+        service.post("/orders/read-twice", (request, response) -> {
+            String body = request.body();
+            return body.length() + " " + request.bodyAs(Order.class).id();
+        });
+        service.post("/signup", (request, response) -> {
+            Signup signup = request.formAs(Signup.class);
+            return signup.email + " " + signup.age + " " + signup.topics;
+        });
+        service.post("/signup/json", (request, response) -> {
+            Signup signup = request.bodyAs(Signup.class);
+            return signup.email + " " + signup.age + " " + signup.topics;
+        });
+        client = service.localClient();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void bindsNestedRecords() {
+        LocalResponse response = client.post("/orders", """
+            {"id": 7, "size": "LARGE", "unknown": {"skipped": [1, 2]},
+             "items": [{"sku": "a-1", "quantity": 2, "price": 19.990000000000000001}],
+             "notes": {"door": "back"}}
+            """);
+        assertEquals(200, response.status());
+        assertEquals("7 LARGE [Item[sku=a-1, quantity=2, price=19.990000000000000001]] {door=back} false",
+            response.bodyAsString());
+    }
+
+    @Test
+    public void bindsPojosThroughSettersAndFields() {
+        LocalResponse response = client.post("/signup/json", """
+            {"email": "a@example.com", "age": null, "topics": ["jvm", "http"]}""");
+        assertEquals("a@example.com 0 [jvm, http]", response.bodyAsString());
+    }
+
+    @Test
+    public void bindsAfterTheBodyWasRead() {
+        LocalResponse response = client.post("/orders/read-twice", "{\"id\": 3}");
+        assertEquals("9 3", response.bodyAsString());
+    }
+
+    @Test
+    public void bindsForms() {
+        LocalResponse response = client.request("POST", "/signup",
+            Map.of("Content-Type", "application/x-www-form-urlencoded"),
+            "email=b%40example.com&age=42&topics=jvm&topics=http".getBytes(StandardCharsets.UTF_8));
+        assertEquals("b@example.com 42 [jvm, http]", response.bodyAsString());
+    }
+
+    @Test
+    public void rejectsInvalidBodies() {
+        assertEquals(400, client.post("/orders", "{\"id\": 7,}").status());
+        assertEquals(400, client.post("/orders", "{\"size\": \"MEDIUM\"}").status());
+        assertEquals(400, client.post("/orders", "{\"id\": \"seven\"}").status());
+        assertEquals(400, client.post("/orders", "").status());
+        // An unknown field is skipped, but not past the nesting limit
+        assertEquals(400, client.post("/orders", "{\"notes\": " + "[".repeat(100_000) + "}").status());
+        assertEquals(400, client.post("/orders", "{\"notes\": " + "{\"a\": ".repeat(50_000) + "}").status());
+    }
+
+    @Test
+    public void rejectsBodiesOverTheMaxRequestSize() throws Exception {
+        String large = "{\"id\": 7, \"notes\": {\"text\": \"" + "x".repeat(1_100_000) + "\"}}";
+        assertEquals(413, client.post("/orders", large).status());
+
+        // Without a Content-Length the limit is enforced while reading
+        Service network = Service.ignite().port(0);
+        network.post("/orders", (request, response) -> request.bodyAs(Order.class).id());
+        network.awaitInitialization();
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://localhost:" + network.port() + "/orders"))
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(
+                        () -> new ByteArrayInputStream(large.getBytes(StandardCharsets.UTF_8))))
+                    .build(),
+                HttpResponse.BodyHandlers.ofString());
+            assertEquals(413, response.statusCode());
+        } finally {
+            network.stop();
+        }
+    }
+}
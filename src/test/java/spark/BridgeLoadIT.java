@@ -0,0 +1,141 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static spark.Spark.*;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Properties;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Drives the bridge with fixed-rate load and fails when latency or throughput regress
+ * past the baselines in loadtest-baseline.properties.
+ *
+ * Run with: mvn -B verify -Pload-test
+ * Baselines can be scaled for slower machines with -Dloadtest.tolerance=2.0
+ */
+public class BridgeLoadIT {
+
+    private static final Duration WARMUP = Duration.ofSeconds(3);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(10);
+
+    private static LoadGenerator generator;
+    private static Properties baseline;
+    private static double tolerance;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        port(0);
+
+        before("/*", (request, response) -> response.header("X-Bridge", "load-test"));
+
+        get("/hello", (request, response) -> "Hello World!");
+
+        get("/hello/:name", (request, response) -> "Hello " + request.params(":name") + "!");
+
+        get("/search", (request, response) -> {
+            String query = request.queryParams("q");
+            return query != null ? "Searching for: " + query : "No search query provided";
+        });
+
+        post("/api/users", (request, response) -> {
+            response.type("application/json");
+            response.status(201);
+            return "{ \"id\": 1, \"name\": \"" + request.queryParams("name") + "\" }";
+        });
+
+        get("/work", (request, response) -> {
+            Thread.sleep(20);
+            return "Work completed by thread: " + Thread.currentThread().getName();
+        });
+
+        after("/*", (request, response) -> response.header("X-Status", String.valueOf(response.status())));
+
+        awaitInitialization();
+
+        generator = new LoadGenerator();
+        baseline = new Properties();
+        try (InputStream in = BridgeLoadIT.class.getResourceAsStream("/loadtest-baseline.properties")) {
+            baseline.load(in);
+        }
+        tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "1.0"));
+
+        // Warm up the JIT on every route once, so the first scenario isn't charged for compilation
+        for (String path : new String[] {"/hello", "/hello/load", "/search?q=spark", "/work"}) {
+            generator.run(request(path), 200, WARMUP);
+        }
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        generator.close();
+        stop();
+    }
+
+    @Test
+    public void hello() throws Exception {
+        runScenario("hello", request("/hello"));
+    }
+
+    @Test
+    public void pathParam() throws Exception {
+        runScenario("pathParam", request("/hello/load"));
+    }
+
+    @Test
+    public void queryParam() throws Exception {
+        runScenario("queryParam", request("/search?q=spark"));
+    }
+
+    @Test
+    public void postWithQueryParams() throws Exception {
+        runScenario("post", HttpRequest.newBuilder(uri("/api/users?name=load&email=load@example.com"))
+            .POST(HttpRequest.BodyPublishers.noBody())
+            .build());
+    }
+
+    @Test
+    public void slowRoute() throws Exception {
+        runScenario("slowRoute", request("/work"));
+    }
+
+    private void runScenario(String name, HttpRequest request) throws Exception {
+        int rate = Integer.parseInt(baseline.getProperty(name + ".rate"));
+
+        generator.run(request, rate, WARMUP);
+        LoadGenerator.Result result = generator.run(request, rate, MEASUREMENT);
+        System.out.println("[load-test] " + name + " @" + rate + "/s: " + result);
+
+        assertEquals(name + " had failed requests", 0, result.errors());
+        assertTrue(name + " throughput " + result.throughput() + "/s below baseline",
+            result.throughput() >= baselineValue(name, "throughput") / tolerance);
+        assertLatency(name, "p50", result.percentileMillis(50));
+        assertLatency(name, "p99", result.percentileMillis(99));
+        assertLatency(name, "p999", result.percentileMillis(99.9));
+    }
+
+    private void assertLatency(String name, String percentile, double actualMillis) {
+        double limit = baselineValue(name, percentile) * tolerance;
+        assertTrue(name + " " + percentile + " " + actualMillis + "ms exceeds baseline " + limit + "ms",
+            actualMillis <= limit);
+    }
+
+    private double baselineValue(String name, String metric) {
+        String value = baseline.getProperty(name + "." + metric, baseline.getProperty("default." + metric));
+        return Double.parseDouble(value);
+    }
+
+    private static HttpRequest request(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + port() + path);
+    }
+}
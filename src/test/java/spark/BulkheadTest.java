@@ -0,0 +1,122 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Routes on a bulkhead: exception mapping as for synchronous routes, rejection when full
+ * and timed out routes that can no longer touch the response
+ */
+public class BulkheadTest {
+
+    private static final CountDownLatch entered = new CountDownLatch(1);
+    private static final CountDownLatch release = new CountDownLatch(1);
+    private static final Bulkhead single = Bulkhead.threads("single", 1, 0);
+    private static final CountDownLatch wakeZombie = new CountDownLatch(1);
+    private static final CompletableFuture<String> zombieSaw = new CompletableFuture<>();
+    private static Service service;
+    private static LocalClient client;
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(-1);
+        service.bulkhead("/isolated/*", Bulkhead.virtual("isolated", 4, 4));
+        service.bulkhead("/single/*", single);
+        for (String prefix : new String[] {"/direct", "/isolated"}) {
+            service.get(prefix + "/mapped", (request, response) -> {
+                throw new IllegalStateException("boom");
+            });
+            service.get(prefix + "/crash", (request, response) -> {
+                throw new UnsupportedOperationException("crash");
+            });
+        }
+        service.get("/single/wait", (request, response) -> {
+            entered.countDown();
+            release.await();
+            return "done";
+        });
+        service.get("/zombie", (request, response) -> {
+            // Ignores the interrupt and carries on after its deadline
+            while (true) {
+                try {
+                    wakeZombie.await();
+                    break;
+                } catch (InterruptedException ignored) {
+                    // keep waiting
+                }
+            }
+            response.header("X-Late", "zombie");
+            response.status(201);
+            zombieSaw.complete(response.raw().res().getHeader("X-Late") + " " + response.raw().res().getStatus());
+            return "zombie";
+        }).timeout(Duration.ofMillis(100));
+        service.exception(IllegalStateException.class, (exception, request, response) -> {
+            response.status(409);
+            response.body("mapped " + exception.getMessage());
+        });
+        service.exception(UnsupportedOperationException.class, (exception, request, response) -> response.status(500));
+        service.internalServerError((request, response) -> "custom 500");
+        service.after("/*", (request, response) -> response.header("X-After", "ran"));
+        client = service.localClient();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        release.countDown();
+        wakeZombie.countDown();
+        service.stop();
+    }
+
+    @Test
+    public void mapsExceptionsAsForDirectRoutes() {
+        for (String prefix : new String[] {"/direct", "/isolated"}) {
+            LocalResponse response = client.get(prefix + "/mapped");
+            assertEquals(prefix, 409, response.status());
+            assertEquals(prefix, "mapped boom", response.bodyAsString());
+            assertEquals(prefix, "ran", response.header("X-After"));
+        }
+    }
+
+    @Test
+    public void runsTheInternalServerErrorHandler() {
+        for (String prefix : new String[] {"/direct", "/isolated"}) {
+            LocalResponse response = client.get(prefix + "/crash");
+            assertEquals(prefix, 500, response.status());
+            assertEquals(prefix, "custom 500", response.bodyAsString());
+            assertEquals(prefix, "ran", response.header("X-After"));
+        }
+    }
+
+    @Test
+    public void rejectsWhenFull() throws Exception {
+        CompletableFuture<LocalResponse> first = CompletableFuture.supplyAsync(() -> client.get("/single/wait"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        LocalResponse rejected = client.get("/single/wait");
+        assertEquals(503, rejected.status());
+        assertEquals("1", rejected.header("Retry-After"));
+        assertEquals("ran", rejected.header("X-After"));
+        assertEquals(1, single.rejected());
+
+        release.countDown();
+        assertEquals("done", first.get(5, TimeUnit.SECONDS).bodyAsString());
+    }
+
+    @Test
+    public void timedOutRoutesCannotTouchTheResponse() throws Exception {
+        LocalResponse response = client.get("/zombie");
+        assertEquals(504, response.status());
+        assertEquals("Gateway Timeout", response.bodyAsString());
+
+        wakeZombie.countDown();
+        assertEquals("null 504", zombieSaw.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,96 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Limit growth and backoff on latency, and the 503 sent once the limit is reached
+ */
+public class ConcurrencyLimiterTest {
+
+    private static final long MILLI = 1_000_000;
+
+    @Test
+    public void growsWhileLatencyStaysNearTheBaseline() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 100);
+        for (int i = 0; i < 10; i++) {
+            int inFlight = limiter.tryAcquire();
+            // Report the limit as fully used
+            limiter.release(MILLI, limiter.limit());
+            assertEquals(1, inFlight);
+        }
+        assertEquals(14, limiter.limit());
+
+        // An idle limit doesn't grow
+        limiter.release(MILLI, 1);
+        assertEquals(14, limiter.limit());
+    }
+
+    @Test
+    public void backsOffOncePerWindowWhenLatencyRises() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(50, 100);
+        for (int i = 0; i < 100; i++) {
+            limiter.release(MILLI, 1);
+        }
+        assertEquals(50, limiter.limit());
+
+        for (int i = 0; i < 10; i++) {
+            limiter.release(10 * MILLI, 50);
+        }
+        assertEquals(45, limiter.limit());
+        // Still queueing, but the window that backed off has to pass first
+        for (int i = 0; i < 300; i++) {
+            limiter.release(10 * MILLI, 45);
+        }
+        assertEquals(45, limiter.limit());
+    }
+
+    @Test
+    public void holdsUpUnderVaryingButHealthyLatency() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 100);
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            // Evenly spread from 1 to 10ms with the limit fully used
+            limiter.release(MILLI + (long) (random.nextDouble() * 9 * MILLI), limiter.limit());
+        }
+        assertEquals(100, limiter.limit());
+    }
+
+    @Test
+    public void rejectsWithRetryAfterOnceTheLimitIsReached() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Service service = Service.ignite().port(-1);
+        try {
+            ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 0.9, 2.0, 7);
+            service.concurrencyLimit("/work", limiter);
+            service.get("/work", (request, response) -> {
+                entered.countDown();
+                release.await();
+                return "done";
+            });
+            LocalClient client = service.localClient();
+
+            CompletableFuture<LocalResponse> first = CompletableFuture.supplyAsync(() -> client.get("/work"));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            LocalResponse rejected = client.get("/work");
+            assertEquals(503, rejected.status());
+            assertEquals("7", rejected.header("Retry-After"));
+            assertEquals(1, limiter.rejected());
+
+            release.countDown();
+            assertEquals("done", first.get(5, TimeUnit.SECONDS).bodyAsString());
+            assertEquals(0, limiter.inFlight());
+            assertEquals(200, client.get("/work").status());
+        } finally {
+            release.countDown();
+            service.stop();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.URI;
+import java.net.UnixDomainSocketAddress;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+/**
+ * Tuned connectors: h2c next to HTTP/1.1, and TCP next to a Unix domain socket
+ */
+public class ConnectorTest {
+
+    @Test
+    public void negotiatesH2c() throws Exception {
+        Service service = Service.ignite().port(0)
+            .connector(new ConnectorOptions().acceptQueueSize(128).http2(new Http2Options().maxConcurrentStreams(16)));
+        try {
+            service.get("/hello", (request, response) -> "hello " + request.raw().getContext().protocol());
+            service.awaitInitialization();
+
+            HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+            // The first request upgrades the connection, the next one is sent as an h2 stream
+            assertEquals(HttpClient.Version.HTTP_2, get(client, service.port()).version());
+            HttpResponse<String> h2 = get(client, service.port());
+            assertEquals(HttpClient.Version.HTTP_2, h2.version());
+            assertEquals("hello HTTP/2.0", h2.body());
+
+            HttpResponse<String> http1 = get(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(), service.port());
+            assertEquals(HttpClient.Version.HTTP_1_1, http1.version());
+            assertEquals("hello HTTP/1.1", http1.body());
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    public void servesTcpNextToTheSocket() throws Exception {
+        Path directory = Files.createTempDirectory("connector");
+        Path socket = directory.resolve("spark.sock");
+        Service service = Service.ignite().port(0).unixSocket(socket);
+        try {
+            service.get("/hello", (request, response) -> "hello");
+            service.awaitInitialization();
+
+            assertEquals("hello", get(HttpClient.newHttpClient(), service.port()).body());
+            try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+                channel.connect(UnixDomainSocketAddress.of(socket));
+                channel.write(ByteBuffer.wrap("GET /hello HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII)));
+                ByteBuffer buffer = ByteBuffer.allocate(4096);
+                while (channel.read(buffer) >= 0) {
+                    // read until the server closes
+                }
+                String response = new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+                assertEquals("HTTP/1.1 200 OK", response.substring(0, response.indexOf("\r\n")));
+            }
+        } finally {
+            service.stop();
+            Files.deleteIfExists(socket);
+            Files.delete(directory);
+        }
+    }
+
+    private static HttpResponse<String> get(HttpClient client, int port) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/hello")).build(),
+            HttpResponse.BodyHandlers.ofString());
+    }
+}
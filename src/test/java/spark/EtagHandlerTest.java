@@ -0,0 +1,91 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * ETags from body hashes and version functions, and 304s for matching If-None-Match
+ */
+public class EtagHandlerTest {
+
+    private static final AtomicInteger versionedRenders = new AtomicInteger();
+    private static Service service;
+    private static LocalClient client;
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(-1);
+        service.get("/hashed", (request, response) -> "hashed body");
+        service.etag("/hashed");
+        service.get("/versioned/:id", (request, response) -> {
+            versionedRenders.incrementAndGet();
+            return "version of " + request.params(":id");
+        });
+        service.etag("/versioned/:id", request -> "v-" + request.params(":id"));
+        client = service.localClient();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void hashesTheBody() {
+        LocalResponse response = client.get("/hashed");
+        String etag = "\"" + Long.toHexString(EtagHandler.xxh64("hashed body".getBytes(StandardCharsets.UTF_8))) + "\"";
+        assertEquals(200, response.status());
+        assertEquals(etag, response.header("ETag"));
+        assertEquals("hashed body", response.bodyAsString());
+
+        LocalResponse notModified = get("/hashed", etag);
+        assertEquals(304, notModified.status());
+        assertEquals(0, notModified.body().length);
+        assertEquals(etag, notModified.header("ETag"));
+
+        assertEquals(200, get("/hashed", "\"stale\"").status());
+    }
+
+    @Test
+    public void versionFunctionSkipsTheRender() {
+        int renders = versionedRenders.get();
+        LocalResponse notModified = get("/versioned/7", "\"v-7\"");
+        assertEquals(304, notModified.status());
+        assertEquals(0, notModified.body().length);
+        assertEquals(renders, versionedRenders.get());
+
+        LocalResponse changed = get("/versioned/8", "\"v-7\"");
+        assertEquals(200, changed.status());
+        assertEquals("\"v-8\"", changed.header("ETag"));
+        assertEquals("version of 8", changed.bodyAsString());
+        assertEquals(renders + 1, versionedRenders.get());
+    }
+
+    @Test
+    public void comparesWeakly() {
+        assertEquals(304, get("/versioned/1", "W/\"v-1\"").status());
+        assertEquals(304, get("/versioned/1", "\"other\", W/\"v-1\"").status());
+        assertEquals(304, get("/versioned/1", "*").status());
+        assertTrue(EtagHandler.matches("W/\"a\"", "\"a\""));
+        assertFalse(EtagHandler.matches("\"a\"", "\"ab\""));
+        assertFalse(EtagHandler.matches(null, "\"a\""));
+    }
+
+    @Test
+    public void matchesReferenceHashes() {
+        assertEquals(0xEF46DB3751D8E999L, EtagHandler.xxh64(new byte[0]));
+        assertEquals(0x44BC2CF5AD770999L, EtagHandler.xxh64("abc".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static LocalResponse get(String path, String ifNoneMatch) {
+        return client.request("GET", path, Map.of("If-None-Match", ifNoneMatch), null);
+    }
+}
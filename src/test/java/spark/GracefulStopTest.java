@@ -0,0 +1,98 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * stop() draining in-flight requests while readiness reports 503, and serving the failing
+ * probe over the network for the readiness delay before closing the connectors
+ */
+public class GracefulStopTest {
+
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private Service service;
+
+    @Before
+    public void startService() {
+        service = Service.ignite().port(0).shutdownTimeout(10_000);
+        service.readinessCheck("/ready");
+        service.get("/slow", (request, response) -> {
+            entered.countDown();
+            release.await();
+            return "finished";
+        });
+        service.awaitInitialization();
+    }
+
+    @After
+    public void stopService() {
+        release.countDown();
+        service.stop();
+    }
+
+    @Test
+    public void waitsForInFlightRequests() throws Exception {
+        LocalClient local = service.localClient();
+        assertEquals(200, local.get("/ready").status());
+
+        CompletableFuture<HttpResponse<String>> inFlight = HttpClient.newHttpClient().sendAsync(
+            HttpRequest.newBuilder(URI.create("http://localhost:" + service.port() + "/slow")).build(),
+            HttpResponse.BodyHandlers.ofString());
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> stopping = CompletableFuture.runAsync(service::stop);
+        CompletableFuture<Void> stopped = CompletableFuture.runAsync(service::awaitStop);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (local.get("/ready").status() != 503 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(503, local.get("/ready").status());
+        // The service lock isn't held while draining
+        CompletableFuture.runAsync(service::awaitInitialization).get(1, TimeUnit.SECONDS);
+        Thread.sleep(100);
+        assertTrue(!stopping.isDone() && !stopped.isDone());
+
+        release.countDown();
+        HttpResponse<String> response = inFlight.get(5, TimeUnit.SECONDS);
+        assertEquals(200, response.statusCode());
+        assertEquals("finished", response.body());
+        stopping.get(5, TimeUnit.SECONDS);
+        stopped.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void keepsServingTheFailingProbeForTheReadinessDelay() throws Exception {
+        Service delayed = Service.ignite().port(0).readinessDelay(1000);
+        delayed.readinessCheck("/ready");
+        delayed.awaitInitialization();
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create("http://localhost:" + delayed.port() + "/ready")).build();
+        assertEquals(200, client.send(probe, HttpResponse.BodyHandlers.ofString()).statusCode());
+
+        long start = System.nanoTime();
+        CompletableFuture<Void> stopping = CompletableFuture.runAsync(delayed::stop);
+        int status = 200;
+        while (status != 503 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) {
+            // A fresh connection each time, as a load balancer's probe would open
+            try (HttpClient fresh = HttpClient.newHttpClient()) {
+                status = fresh.send(probe, HttpResponse.BodyHandlers.ofString()).statusCode();
+            }
+        }
+        assertEquals(503, status);
+        assertTrue(!stopping.isDone());
+        stopping.get(5, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(1000));
+    }
+}
@@ -0,0 +1,124 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import io.javalin.http.BadRequestResponse;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * halt() from filters and routes, and exception handlers resolved by class hierarchy, including for Javalin's own response exceptions
+ */
+public class HaltTest {
+
+    private static Service service;
+    private static LocalClient client;
+
+    static class ValidationException extends IllegalArgumentException {
+        ValidationException(String message) {
+            super(message);
+        }
+    }
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(-1);
+        service.before("/secure/*", (request, response) -> {
+            if (!"token".equals(request.headers("Authorization"))) {
+                service.halt(401, "Unauthorized");
+            }
+        });
+        service.before("/secure/*", (request, response) -> response.header("X-Second-Filter", "ran"));
+        service.after("/*", (request, response) -> response.header("X-After", "ran"));
+        service.get("/secure/data", (request, response) -> "data");
+        service.get("/quota", (request, response) -> {
+            response.body("over quota");
+            throw service.halt(429);
+        });
+        service.get("/validate", (request, response) -> {
+            throw new ValidationException("bad input");
+        });
+        service.get("/bad", (request, response) -> {
+            throw new BadRequestResponse("missing id");
+        });
+        service.exception(BadRequestResponse.class, (exception, request, response) -> {
+            response.status(422);
+            response.body("rejected: " + exception.getMessage());
+        });
+        service.exception(IllegalArgumentException.class, (exception, request, response) -> {
+            response.status(400);
+            response.body("invalid: " + exception.getMessage());
+        });
+        service.notFound((request, response) -> "custom not found");
+        client = service.localClient();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void haltInBeforeFilterSkipsRouteButRunsAfterFilters() {
+        LocalResponse response = client.get("/secure/data");
+        assertEquals(401, response.status());
+        assertEquals("Unauthorized", response.bodyAsString());
+        assertNull(response.header("X-Second-Filter"));
+        assertEquals("ran", response.header("X-After"));
+    }
+
+    @Test
+    public void requestsPassingTheFilterReachTheRoute() {
+        LocalResponse response = client.request("GET", "/secure/data", Map.of("Authorization", "token"), null);
+        assertEquals(200, response.status());
+        assertEquals("data", response.bodyAsString());
+        assertEquals("ran", response.header("X-Second-Filter"));
+    }
+
+    @Test
+    public void haltOnPathWithoutRouteKeepsItsStatus() {
+        LocalResponse response = client.get("/secure/missing");
+        assertEquals(401, response.status());
+        assertEquals("Unauthorized", response.bodyAsString());
+    }
+
+    @Test
+    public void haltWithoutBodyKeepsBodySetBefore() {
+        LocalResponse response = client.get("/quota");
+        assertEquals(429, response.status());
+        assertEquals("over quota", response.bodyAsString());
+        assertEquals("ran", response.header("X-After"));
+    }
+
+    @Test
+    public void haltsWithoutBodyAreShared() {
+        assertEquals(HaltException.of(401, null), HaltException.of(401, null));
+        assertEquals(0, HaltException.of(401, null).getStackTrace().length);
+    }
+
+    @Test
+    public void exceptionHandlerFoundThroughSuperclass() {
+        for (int i = 0; i < 2; i++) {
+            LocalResponse response = client.get("/validate");
+            assertEquals(400, response.status());
+            assertEquals("invalid: bad input", response.bodyAsString());
+        }
+    }
+
+    @Test
+    public void handlerForJavalinResponseExceptionIsUsed() {
+        LocalResponse response = client.get("/bad");
+        assertEquals(422, response.status());
+        assertEquals("rejected: missing id", response.bodyAsString());
+    }
+
+    @Test
+    public void notFoundStillHandled() {
+        LocalResponse response = client.get("/nowhere");
+        assertEquals(404, response.status());
+        assertEquals("custom not found", response.bodyAsString());
+    }
+}
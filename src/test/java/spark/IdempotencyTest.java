@@ -0,0 +1,120 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Idempotency-Key replays, scoping per client and rejection of reused keys
+ */
+public class IdempotencyTest {
+
+    private static final AtomicInteger orders = new AtomicInteger();
+    private static final AtomicInteger requestIds = new AtomicInteger();
+    private static final AtomicInteger fragileCalls = new AtomicInteger();
+    private static final CountDownLatch fragileEntered = new CountDownLatch(1);
+    private static final CountDownLatch fragileRelease = new CountDownLatch(1);
+    private static Service service;
+    private static LocalClient client;
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(-1);
+        service.before("/*", (request, response) -> response.header("X-Request-Id", "r" + requestIds.incrementAndGet()));
+        service.post("/orders", (request, response) -> {
+            response.status(201);
+            return "order " + orders.incrementAndGet() + " " + request.body();
+        }).idempotent(new InMemoryIdempotencyStore(), request -> request.headers("X-User"));
+        service.post("/fragile", (request, response) -> {
+            if (fragileCalls.incrementAndGet() == 1) {
+                fragileEntered.countDown();
+                fragileRelease.await();
+                throw new AssertionError("first attempt failed");
+            }
+            return "second attempt";
+        }).idempotent(new InMemoryIdempotencyStore(), request -> request.headers("X-User"));
+        client = service.localClient();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void replaysTheFirstResponse() {
+        LocalResponse first = post("alice", "replay", "book");
+        LocalResponse retry = post("alice", "replay", "book");
+        assertEquals(201, retry.status());
+        assertEquals(first.bodyAsString(), retry.bodyAsString());
+        assertEquals("true", retry.header("Idempotent-Replayed"));
+        assertNull(first.header("Idempotent-Replayed"));
+        // The filter's header belongs to the retry, not the first request
+        assertNotEquals(first.header("X-Request-Id"), retry.header("X-Request-Id"));
+    }
+
+    @Test
+    public void scopesKeysPerClient() {
+        LocalResponse alice = post("alice", "shared", "book");
+        LocalResponse bob = post("bob", "shared", "book");
+        assertNull(bob.header("Idempotent-Replayed"));
+        assertNotEquals(alice.bodyAsString(), bob.bodyAsString());
+    }
+
+    @Test
+    public void rejectsAKeyReusedForAnotherRequest() {
+        post("carol", "reused", "book");
+        int before = orders.get();
+        LocalResponse reused = post("carol", "reused", "lamp");
+        assertEquals(422, reused.status());
+        assertEquals(before, orders.get());
+    }
+
+    @Test
+    public void duplicatesAreReleasedWhenTheFirstAttemptThrowsAnError() throws Exception {
+        Map<String, String> headers = Map.of("X-User", "dave", "Idempotency-Key", "fragile");
+        CompletableFuture<LocalResponse> first = CompletableFuture.supplyAsync(
+            () -> client.request("POST", "/fragile", headers, new byte[0]));
+        assertTrue(fragileEntered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<LocalResponse> duplicate = CompletableFuture.supplyAsync(
+            () -> client.request("POST", "/fragile", headers, new byte[0]));
+        // Let the duplicate start waiting before the first attempt fails
+        Thread.sleep(100);
+        fragileRelease.countDown();
+        assertEquals(500, first.get(5, TimeUnit.SECONDS).status());
+        // Nothing was stored, so the duplicate runs the route itself
+        assertEquals("second attempt", duplicate.get(5, TimeUnit.SECONDS).bodyAsString());
+    }
+
+    @Test
+    public void queuesEachKeyOnce() throws Exception {
+        InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(1, 2);
+        StoredResponse response = new StoredResponse(200, Map.of(), new byte[0]);
+        for (int i = 0; i < 5; i++) {
+            store.put("a", response);
+            Thread.sleep(3);
+            assertNull(store.get("a"));
+        }
+        assertEquals(1, store.queuedKeys());
+        store.put("b", response);
+        store.put("c", response);
+        assertEquals(2, store.size());
+        assertEquals(2, store.queuedKeys());
+    }
+
+    private static LocalResponse post(String user, String key, String body) {
+        return client.request("POST", "/orders", Map.of("X-User", user, "Idempotency-Key", key),
+            body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,125 @@
+package spark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop HTTP load generator used by the load tests.
+ *
+ * Requests are fired on a fixed schedule regardless of how fast the server answers,
+ * each one on its own virtual thread. Latency is measured from the time the request
+ * was scheduled to be sent rather than the time it actually went out, so a stalled
+ * server is charged for the requests queued up behind it (no coordinated omission).
+ */
+public class LoadGenerator {
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+
+    public LoadGenerator() {
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.client = HttpClient.newBuilder()
+            .executor(executor)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    }
+
+    /**
+     * Sends requests at a fixed rate for the given duration and waits for all of them to complete
+     */
+    public Result run(HttpRequest request, int requestsPerSecond, Duration duration) throws InterruptedException {
+        int total = (int) (requestsPerSecond * duration.toMillis() / 1000);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long[] latencies = new long[total];
+        CountDownLatch recorded = new CountDownLatch(total);
+        AtomicInteger errors = new AtomicInteger();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            int slot = i;
+            long intended = start + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            executor.execute(() -> {
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() >= 500) {
+                        errors.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                }
+                // Written before the count down, which publishes it to the waiting thread
+                latencies[slot] = System.nanoTime() - intended;
+                recorded.countDown();
+            });
+        }
+
+        recorded.await();
+        long elapsed = System.nanoTime() - start;
+        return new Result(latencies, errors.get(), elapsed);
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Latency distribution and throughput of one run
+     */
+    public static class Result {
+
+        private final long[] sortedLatencies;
+        private final int errors;
+        private final long elapsedNanos;
+
+        Result(long[] latencies, int errors, long elapsedNanos) {
+            this.sortedLatencies = latencies.clone();
+            Arrays.sort(this.sortedLatencies);
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the latency at the given percentile (0-100) in milliseconds
+         */
+        public double percentileMillis(double percentile) {
+            int index = (int) Math.ceil(percentile / 100.0 * sortedLatencies.length) - 1;
+            index = Math.max(0, Math.min(index, sortedLatencies.length - 1));
+            return sortedLatencies[index] / 1_000_000.0;
+        }
+
+        /**
+         * @return completed requests per second over the whole run
+         */
+        public double throughput() {
+            return sortedLatencies.length / (elapsedNanos / 1_000_000_000.0);
+        }
+
+        public int errors() {
+            return errors;
+        }
+
+        public int count() {
+            return sortedLatencies.length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d errors=%d throughput=%.1f/s p50=%.2fms p99=%.2fms p999=%.2fms",
+                count(), errors, throughput(), percentileMillis(50), percentileMillis(99), percentileMillis(99.9));
+        }
+    }
+}
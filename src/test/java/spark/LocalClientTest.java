@@ -0,0 +1,114 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Calls routes in memory on a service that never opens a socket
+ */
+public class LocalClientTest {
+
+    private static Service service;
+    private static LocalClient client;
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(-1);
+        service.before("/*", (request, response) -> response.header("X-Order", "before"));
+        service.before("/secure/*", (request, response) -> {
+            if (!"secret".equals(request.headers("X-Key"))) {
+                throw new SecurityException("bad key");
+            }
+        });
+        service.after("/*", (request, response) -> response.header("X-Order", response.raw().res().getHeader("X-Order") + ",after"));
+        service.exception(SecurityException.class, (exception, request, response) -> {
+            response.status(403);
+            response.body(exception.getMessage());
+        });
+        service.get("/hello/:name", (request, response) -> {
+            response.header("X-Order", response.raw().res().getHeader("X-Order") + ",route");
+            return "Hello " + request.params(":name") + " " + request.queryParams("greeting");
+        });
+        service.post("/echo", (request, response) -> {
+            response.type("application/json");
+            return request.body();
+        });
+        service.get("/secure/data", (request, response) -> "data");
+        service.get("/fail", (request, response) -> {
+            throw new IllegalStateException("broken");
+        });
+        service.post("/login", (request, response) -> {
+            request.context().sessionAttribute("user", request.body());
+            return "welcome";
+        });
+        service.get("/me", (request, response) -> {
+            String user = request.context().sessionAttribute("user");
+            return user != null ? user : "anonymous";
+        });
+        service.post("/logout", (request, response) -> {
+            request.raw().getContext().req().getSession().invalidate();
+            return "bye";
+        });
+        client = service.localClient();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void keepsASessionPerClient() {
+        LocalClient browser = service.localClient();
+        assertEquals("anonymous", browser.get("/me").bodyAsString());
+        browser.post("/login", "ada");
+        assertEquals("ada", browser.get("/me").bodyAsString());
+        assertEquals("anonymous", service.localClient().get("/me").bodyAsString());
+
+        browser.post("/logout", "");
+        assertEquals("anonymous", browser.get("/me").bodyAsString());
+    }
+
+    @Test
+    public void neverListens() {
+        assertEquals(-1, service.port());
+    }
+
+    @Test
+    public void runsFiltersAndRouteInOrder() {
+        LocalResponse response = client.get("/hello/local?greeting=hi");
+        assertEquals(200, response.status());
+        assertEquals("Hello local hi", response.bodyAsString());
+        assertEquals("before,route,after", response.header("x-order"));
+    }
+
+    @Test
+    public void passesHeadersAndBody() {
+        byte[] body = "{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        LocalResponse response = client.request("POST", "/echo", Map.of("Content-Type", "application/json"), body);
+        assertEquals(200, response.status());
+        assertEquals("application/json", response.header("Content-Type"));
+        assertEquals("{\"a\":1}", response.bodyAsString());
+    }
+
+    @Test
+    public void appliesExceptionHandlers() {
+        assertEquals(403, client.get("/secure/data").status());
+        assertEquals("bad key", client.get("/secure/data").bodyAsString());
+        assertEquals("data", client.request("GET", "/secure/data", Map.of("X-Key", "secret"), null).bodyAsString());
+        assertEquals(500, client.get("/fail").status());
+    }
+
+    @Test
+    public void answersUnknownPathsWith404() {
+        LocalResponse response = client.get("/nowhere");
+        assertEquals(404, response.status());
+        assertNull(response.header("X-Unset"));
+    }
+}
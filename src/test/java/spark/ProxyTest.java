@@ -0,0 +1,129 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Proxies /api/* to a stub upstream running in the same JVM
+ */
+public class ProxyTest {
+
+    private static Service upstream;
+    private static Service service;
+    private static Proxy proxy;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeClass
+    public static void startServers() {
+        upstream = Service.ignite().port(0);
+        upstream.get("/api/hello", (request, response) -> {
+            response.header("X-Internal", "1");
+            return "Hello " + request.queryParams("name") + " key=" + request.headers("X-Key");
+        });
+        upstream.post("/api/count", (request, response) ->
+            Long.toString(request.raw().getContext().req().getInputStream().transferTo(OutputStream.nullOutputStream())));
+        upstream.get("/api/connection", (request, response) -> {
+            response.header("Connection", "X-Hop");
+            response.header("X-Hop", "1");
+            response.header("X-End", "1");
+            return "hop";
+        });
+        upstream.get("/api/slow", (request, response) -> {
+            Thread.sleep(2000);
+            return "late";
+        });
+        upstream.awaitInitialization();
+
+        service = Service.ignite().port(0);
+        proxy = service.proxy("/api/*", "http://localhost:" + upstream.port(), new ProxyOptions()
+            .responseTimeout(Duration.ofMillis(300))
+            .requestHeaders((request, headers) -> headers.put("X-Key", "secret"))
+            .responseHeaders((request, headers) -> headers.remove("X-Internal")));
+        service.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void stopServers() {
+        service.stop();
+        upstream.stop();
+    }
+
+    @Test
+    public void forwardsPathQueryAndRewritesHeaders() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/api/hello?name=proxy")).build());
+        assertEquals(200, response.statusCode());
+        assertEquals("Hello proxy key=secret", response.body());
+        assertFalse(response.headers().firstValue("X-Internal").isPresent());
+    }
+
+    @Test
+    public void streamsRequestBodies() throws Exception {
+        byte[] body = new byte[3 * 1024 * 1024];
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/api/count"))
+            .POST(HttpRequest.BodyPublishers.ofByteArray(body)).build());
+        assertEquals(200, response.statusCode());
+        assertEquals(Integer.toString(body.length), response.body());
+    }
+
+    @Test
+    public void slowUpstreamGivesGatewayTimeout() throws Exception {
+        long timeouts = proxy.timeouts();
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/api/slow")).build());
+        assertEquals(504, response.statusCode());
+        assertEquals(timeouts + 1, proxy.timeouts());
+    }
+
+    @Test
+    public void dropsHeadersListedInConnection() throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(uri("/api/connection")).build());
+        assertEquals(200, response.statusCode());
+        assertFalse(response.headers().firstValue("X-Hop").isPresent());
+        assertEquals("1", response.headers().firstValue("X-End").orElse(null));
+    }
+
+    @Test
+    public void serviceTimeoutShortensTheUpstreamTimeout() throws Exception {
+        Service limited = Service.ignite().port(0).timeout(Duration.ofMillis(200));
+        Proxy slow = limited.proxy("/api/*", "http://localhost:" + upstream.port());
+        limited.awaitInitialization();
+        try {
+            long start = System.nanoTime();
+            HttpResponse<String> response = send(HttpRequest.newBuilder(
+                URI.create("http://localhost:" + limited.port() + "/api/slow")).build());
+            assertEquals(504, response.statusCode());
+            assertEquals(1, slow.timeouts());
+            assertTrue(System.nanoTime() - start < Duration.ofMillis(1500).toNanos());
+        } finally {
+            limited.stop();
+        }
+    }
+
+    @Test
+    public void reusesPooledConnections() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            send(HttpRequest.newBuilder(uri("/api/hello?name=" + i)).build());
+        }
+        assertTrue(proxy.toString(), proxy.connections() < 10);
+        assertTrue(proxy.toString(), proxy.idleConnections() > 0);
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + service.port() + path);
+    }
+
+    private static HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,87 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+/**
+ * Token buckets per key, eviction of refilled buckets only, and the 429 sent to limited clients
+ */
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void allowsTheBurstThenRefills() {
+        RateLimiter limiter = new RateLimiter("/*", 10, 2, RateLimiter.byIp(), 1000);
+        long now = System.nanoTime();
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertEquals(0, limiter.tryAcquire("a", now));
+        assertTrue(limiter.tryAcquire("a", now) > 0);
+        assertEquals(0, limiter.tryAcquire("b", now));
+        assertEquals(0, limiter.tryAcquire("a", now + SECOND / 10));
+        assertEquals(4, limiter.allowed());
+        assertEquals(1, limiter.rejected());
+    }
+
+    @Test
+    public void evictsOnlyRefilledBuckets() {
+        // 4 keys per stripe
+        RateLimiter limiter = new RateLimiter("/*", 1, 1, RateLimiter.byIp(), 64 * 4);
+        List<String> keys = sameStripeKeys(7);
+        long now = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, limiter.tryAcquire(keys.get(i), now));
+        }
+
+        // Stripe full of active buckets: newcomers share the overflow bucket, nobody is evicted
+        assertEquals(0, limiter.tryAcquire(keys.get(4), now));
+        assertTrue(limiter.tryAcquire(keys.get(5), now) > 0);
+        assertTrue(limiter.tryAcquire(keys.get(0), now) > 0);
+        assertEquals(0, limiter.evicted());
+        assertEquals(2, limiter.overflowed());
+        assertEquals(4, limiter.trackedKeys());
+
+        // Once refilled they can go
+        assertEquals(0, limiter.tryAcquire(keys.get(6), now + 2 * SECOND));
+        assertEquals(4, limiter.evicted());
+        assertEquals(1, limiter.trackedKeys());
+    }
+
+    @Test
+    public void rejectsWithRetryAfter() {
+        Service service = Service.ignite().port(-1);
+        try {
+            RateLimiter limiter = service.rateLimit("/api/*", 1, 1, RateLimiter.byHeader("X-Key"));
+            service.get("/api/data", (request, response) -> "data");
+            service.get("/open", (request, response) -> "open");
+            LocalClient client = service.localClient();
+
+            assertEquals(200, client.request("GET", "/api/data", Map.of("X-Key", "one"), null).status());
+            LocalResponse limited = client.request("GET", "/api/data", Map.of("X-Key", "one"), null);
+            assertEquals(429, limited.status());
+            assertEquals("1", limited.header("Retry-After"));
+            assertEquals(200, client.request("GET", "/api/data", Map.of("X-Key", "two"), null).status());
+            assertEquals(200, client.request("GET", "/open", Map.of("X-Key", "one"), null).status());
+            assertEquals(1, limiter.rejected());
+        } finally {
+            service.stop();
+        }
+    }
+
+    private static List<String> sameStripeKeys(int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "client-" + i;
+            if ((key.hashCode() & 0x7fffffff) % 64 == 0) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
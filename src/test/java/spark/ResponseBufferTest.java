@@ -0,0 +1,121 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Long route results written from pooled direct buffers, plain and gzipped
+ */
+public class ResponseBufferTest {
+
+    private static final String LARGE = "héllo wörld ✓ ".repeat(20_000);
+
+    private static Service service;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(0);
+        service.get("/large", (request, response) -> LARGE);
+        service.get("/small", (request, response) -> "small");
+        service.get("/filtered", (request, response) -> LARGE);
+        service.after("/filtered", (request, response) -> response.body(response.body().length() + " chars"));
+        service.get("/tagged", (request, response) -> LARGE);
+        service.etag("/tagged");
+        service.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void writesLongResultsWithContentLength() throws Exception {
+        HttpResponse<byte[]> response = send("/large", null);
+        assertEquals(200, response.statusCode());
+        assertEquals(LARGE, new String(response.body(), StandardCharsets.UTF_8));
+        assertEquals(String.valueOf(response.body().length), response.headers().firstValue("Content-Length").orElse(null));
+        assertEquals("small", new String(send("/small", null).body(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void gzipsWhenTheClientAcceptsIt() throws Exception {
+        HttpResponse<byte[]> response = send("/large", "gzip, deflate");
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        assertTrue(response.body().length < LARGE.length() / 10);
+        // Compressed into one pooled buffer, so the length is known up front
+        assertEquals(String.valueOf(response.body().length), response.headers().firstValue("Content-Length").orElse(null));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            assertEquals(LARGE, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void reusesBuffers() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            send("/large", i % 2 == 0 ? "gzip" : null);
+        }
+        BufferPool pool = service.responseBuffers();
+        assertTrue(pool.hits() > 0);
+        assertTrue(pool.hitRate() > 0.5);
+        assertEquals(0, pool.oversized());
+    }
+
+    @Test
+    public void cachesOnlySmallBuffersPerThread() {
+        BufferPool pool = new BufferPool();
+        ByteBuffer[] large = {pool.acquire(BufferPool.maxCapacity()), pool.acquire(BufferPool.maxCapacity()),
+            pool.acquire(BufferPool.maxCapacity())};
+        for (ByteBuffer buffer : large) {
+            pool.release(buffer);
+        }
+        // Two shared 1MB slots and no thread's own slot
+        assertEquals(1, pool.dropped());
+
+        ByteBuffer[] small = {pool.acquire(4096), pool.acquire(4096)};
+        for (ByteBuffer buffer : small) {
+            pool.release(buffer);
+        }
+        assertEquals(1, pool.dropped());
+    }
+
+    @Test
+    public void filtersAndEtagsStillSeeTheBody() throws Exception {
+        assertEquals(LARGE.length() + " chars", new String(send("/filtered", null).body(), StandardCharsets.UTF_8));
+
+        HttpResponse<byte[]> tagged = send("/tagged", null);
+        String etag = tagged.headers().firstValue("ETag").orElse(null);
+        assertEquals(LARGE, new String(tagged.body(), StandardCharsets.UTF_8));
+        HttpResponse<byte[]> notModified = client.send(HttpRequest.newBuilder(uri("/tagged"))
+            .header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(304, notModified.statusCode());
+        assertFalse(notModified.body().length > 0);
+    }
+
+    private static HttpResponse<byte[]> send(String path, String acceptEncoding) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(path));
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + service.port() + path);
+    }
+}
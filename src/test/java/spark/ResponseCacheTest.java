@@ -0,0 +1,126 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Cached GET responses, coalesced misses and expiry
+ */
+public class ResponseCacheTest {
+
+    private final AtomicInteger renders = new AtomicInteger();
+    private final AtomicInteger requestIds = new AtomicInteger();
+    private Service service;
+    private LocalClient client;
+
+    @Before
+    public void startService() {
+        service = Service.ignite().port(-1);
+        service.before("/*", (request, response) -> response.header("X-Request-Id", "r" + requestIds.incrementAndGet()));
+        service.get("/count", (request, response) -> {
+            response.raw().res().addHeader("Link", "</a>; rel=prefetch");
+            response.raw().res().addHeader("Link", "</b>; rel=prefetch");
+            return "render " + renders.incrementAndGet();
+        });
+        client = service.localClient();
+    }
+
+    @After
+    public void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void servesCachedResponsesWithAllHeaderValues() {
+        ResponseCache cache = service.cache("/count", 60_000);
+        assertEquals("render 1", client.get("/count").bodyAsString());
+        LocalResponse cached = client.get("/count");
+        assertEquals("render 1", cached.bodyAsString());
+        assertEquals(List.of("</a>; rel=prefetch", "</b>; rel=prefetch"), cached.headers().get("Link"));
+        // Headers set by filters are the current request's own
+        assertEquals("r2", cached.header("X-Request-Id"));
+        assertEquals("render 2", client.get("/count?page=2").bodyAsString());
+        assertEquals(1, cache.hits());
+        assertEquals(2, cache.misses());
+
+        cache.invalidateAll();
+        assertEquals("render 3", client.get("/count").bodyAsString());
+    }
+
+    @Test
+    public void coalescesConcurrentMisses() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ResponseCache cache = service.cache("/slow", 60_000);
+        service.get("/slow", (request, response) -> {
+            entered.countDown();
+            release.await();
+            return "render " + renders.incrementAndGet();
+        });
+
+        List<CompletableFuture<LocalResponse>> responses = new ArrayList<>();
+        responses.add(CompletableFuture.supplyAsync(() -> client.get("/slow")));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) {
+            responses.add(CompletableFuture.supplyAsync(() -> client.get("/slow")));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.coalesced() < 4 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        for (CompletableFuture<LocalResponse> response : responses) {
+            assertEquals("render 1", response.get(5, TimeUnit.SECONDS).bodyAsString());
+        }
+        assertEquals(1, renders.get());
+        assertEquals(4, cache.coalesced());
+    }
+
+    @Test
+    public void waitersAreReleasedWhenTheLeaderThrowsAnError() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ResponseCache cache = service.cache("/fragile", 60_000);
+        service.get("/fragile", (request, response) -> {
+            if (renders.incrementAndGet() == 1) {
+                entered.countDown();
+                release.await();
+                throw new AssertionError("leader failed");
+            }
+            return "recovered";
+        });
+
+        CompletableFuture<LocalResponse> leader = CompletableFuture.supplyAsync(() -> client.get("/fragile"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<LocalResponse> waiter = CompletableFuture.supplyAsync(() -> client.get("/fragile"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (cache.coalesced() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        assertEquals(500, leader.get(5, TimeUnit.SECONDS).status());
+        assertEquals("recovered", waiter.get(5, TimeUnit.SECONDS).bodyAsString());
+    }
+
+    @Test
+    public void expiredKeysAreQueuedOnce() throws Exception {
+        ResponseCache cache = service.cache("/count", 1);
+        for (int i = 1; i <= 10; i++) {
+            assertEquals("render " + i, client.get("/count").bodyAsString());
+            Thread.sleep(3);
+        }
+        assertEquals(10, cache.misses());
+        assertEquals(1, cache.queuedKeys());
+        assertEquals("render 10".length(), cache.bytes());
+    }
+}
@@ -0,0 +1,137 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Event delivery and replay, disconnection of a client that falls behind, and streams ending with the server
+ */
+public class SseTest {
+
+    private static final String END = "<end of stream>";
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private static volatile String closedOn;
+    private static Service service;
+    private static EventStream events;
+    private static EventStream slow;
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(0);
+        events = service.sse("/events", (request, emitter) -> { });
+        slow = service.sse("/slow", (request, emitter) -> emitter.onClose(() -> closedOn = Thread.currentThread().getName()))
+            .maxQueued(3)
+            .flushInterval(Duration.ofMillis(200));
+        service.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void deliversAndReplaysEvents() throws Exception {
+        BlockingQueue<String> lines = connect(service, "/events", null);
+        await(() -> events.clients() == 1);
+        events.publish("first");
+        events.publish("update", "second");
+        assertEquals("id: 1", next(lines));
+        assertEquals("data: first", next(lines));
+        assertEquals("id: 2", next(lines));
+        assertEquals("event: update", next(lines));
+        assertEquals("data: second", next(lines));
+
+        BlockingQueue<String> reconnected = connect(service, "/events", "1");
+        assertEquals("id: 2", next(reconnected));
+        assertEquals("event: update", next(reconnected));
+        assertEquals("data: second", next(reconnected));
+    }
+
+    @Test
+    public void closesAClientThatFallsBehindOnAWriter() throws Exception {
+        BlockingQueue<String> lines = connect(service, "/slow", null);
+        await(() -> slow.clients() == 1);
+        for (int i = 0; i < 10; i++) {
+            slow.publish("event " + i);
+        }
+        await(() -> slow.clients() == 0);
+        // Closed by whichever thread held the flush, a writer or the request's first flush
+        assertNotEquals(Thread.currentThread().getName(), closedOn);
+        String line;
+        while (!(line = next(lines)).equals(END)) {
+            assertTrue(line, !line.startsWith("data: "));
+        }
+    }
+
+    @Test
+    public void stopEndsStreamsAndCancelsTheirTimer() throws Exception {
+        Service stopping = Service.ignite().port(0);
+        EventStream stream = stopping.sse("/events", (request, emitter) -> { });
+        stopping.awaitInitialization();
+        BlockingQueue<String> lines = connect(stopping, "/events", null);
+        await(() -> stream.clients() == 1);
+
+        int scheduled = EventStream.TIMER.getQueue().size();
+        long start = System.nanoTime();
+        stopping.stop();
+        stopping.awaitStop();
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        assertEquals(END, next(lines));
+        assertEquals(0, stream.clients());
+        assertEquals(scheduled - 1, EventStream.TIMER.getQueue().size());
+    }
+
+    /**
+     * Opens the stream and, once the response has started, feeds its field lines into a queue
+     * ending with END; heartbeat comments and the blank lines between events are left out
+     */
+    private static BlockingQueue<String> connect(Service target, String path, String lastEventId) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + target.port() + path));
+        if (lastEventId != null) {
+            request.header("Last-Event-ID", lastEventId);
+        }
+        BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+        CompletableFuture<HttpResponse<Stream<String>>> response =
+            client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofLines());
+        response.thenAcceptAsync(started -> {
+            started.body().filter(line -> !line.isEmpty() && !line.startsWith(":")).forEach(lines::add);
+            lines.add(END);
+        }).exceptionally(failure -> {
+            lines.add(END);
+            return null;
+        });
+        assertEquals(200, response.get(10, TimeUnit.SECONDS).statusCode());
+        return lines;
+    }
+
+    private static String next(BlockingQueue<String> lines) throws InterruptedException {
+        String line = lines.poll(10, TimeUnit.SECONDS);
+        assertTrue("no line within 10s", line != null);
+        return line;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,94 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Template routes rendering through the compiled template cache
+ */
+public class TemplateTest {
+
+    private static Path directory;
+    private static Service service;
+    private static LocalClient client;
+    private static PlaceholderTemplateEngine engine;
+
+    @BeforeClass
+    public static void startService() throws IOException {
+        directory = Files.createTempDirectory("templates");
+        Files.writeString(directory.resolve("hello.html"), "<h1>Hello {{user.name}}</h1>{{{footer}}}");
+        Files.writeString(directory.resolve("reloaded.html"), "version 1");
+
+        engine = new PlaceholderTemplateEngine(directory);
+        engine.reloadOnChange(true);
+        service = Service.ignite().port(-1);
+        service.get("/hello/:name", (request, response) -> new ModelAndView(
+            Map.of("user", Map.of("name", request.params(":name")), "footer", "<hr>"), "hello.html"), engine);
+        service.get("/reloaded", (request, response) -> new ModelAndView(Map.of(), "reloaded.html"), engine);
+        service.get("/tagged", (request, response) -> new ModelAndView(
+            Map.of("user", Map.of("name", "etag")), "hello.html"), engine);
+        service.etag("/tagged");
+        service.get("/denied", (request, response) -> {
+            throw service.halt(403, "Forbidden");
+        }, engine);
+        client = service.localClient();
+    }
+
+    @AfterClass
+    public static void stopService() throws IOException {
+        service.stop();
+        Files.deleteIfExists(directory.resolve("hello.html"));
+        Files.deleteIfExists(directory.resolve("reloaded.html"));
+        Files.deleteIfExists(directory);
+    }
+
+    @Test
+    public void rendersEscapedAndRawValues() {
+        LocalResponse response = client.get("/hello/%3Cb%3E");
+        assertEquals(200, response.status());
+        assertEquals("text/html; charset=utf-8", response.header("Content-Type"));
+        assertEquals("<h1>Hello &lt;b&gt;</h1><hr>", response.bodyAsString());
+    }
+
+    @Test
+    public void compilesEachTemplateOnce() {
+        client.get("/hello/warm");
+        long compilations = engine.compilations();
+        for (int i = 0; i < 10; i++) {
+            client.get("/hello/" + i);
+        }
+        assertEquals(compilations, engine.compilations());
+    }
+
+    @Test
+    public void recompilesChangedTemplates() throws IOException {
+        assertEquals("version 1", client.get("/reloaded").bodyAsString());
+        Path file = directory.resolve("reloaded.html");
+        Files.writeString(file, "version 2");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+        assertEquals("version 2", client.get("/reloaded").bodyAsString());
+    }
+
+    @Test
+    public void rendersToResultWhenEtagNeedsTheBody() {
+        LocalResponse response = client.get("/tagged");
+        assertEquals("<h1>Hello etag</h1>", response.bodyAsString());
+        assertNotNull(response.header("ETag"));
+    }
+
+    @Test
+    public void haltsFromTemplateRoutes() {
+        LocalResponse response = client.get("/denied");
+        assertEquals(403, response.status());
+        assertEquals("Forbidden", response.bodyAsString());
+    }
+}
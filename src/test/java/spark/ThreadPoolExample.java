@@ -20,12 +20,13 @@ public class ThreadPoolExample {
         // Configure static files to serve from an external directory
         staticFiles().externalLocation("public");
 
-        // Add a route that simulates some work
+        // Add a route that simulates some work, isolated on its own bulkhead
+        // so slow requests can't take all 8 Jetty threads away from /hello
         get("/work", (request, response) -> {
             // Simulate some work
             Thread.sleep(1000);
             return "Work completed by thread: " + Thread.currentThread().getName();
-        });
+        }).bulkhead(Bulkhead.virtual("work", 16, 32));
 
         // Simple GET route
         get("/hello", (request, response) -> {
@@ -0,0 +1,98 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Serves requests over a Unix domain socket, talking raw HTTP/1.1 as a sidecar proxy would
+ */
+public class UnixSocketTest {
+
+    private static Path socket;
+    private static Service service;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        socket = Files.createTempDirectory("sparkbridge").resolve("bridge.sock");
+        // A socket left behind by an unclean shutdown must not prevent binding
+        try (ServerSocketChannel stale = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            stale.bind(UnixDomainSocketAddress.of(socket));
+        }
+
+        service = Service.ignite().port(-1).unixSocket(socket);
+        service.get("/hello/:name", (request, response) -> "Hello " + request.params(":name"));
+        service.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void stopServer() throws IOException {
+        service.stop();
+        Files.deleteIfExists(socket);
+        Files.deleteIfExists(socket.getParent());
+    }
+
+    @Test
+    public void servesRequestsOverSocket() throws IOException {
+        String response = exchange("GET /hello/unix HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        assertTrue(response, response.startsWith("HTTP/1.1 200"));
+        assertTrue(response, response.endsWith("Hello unix"));
+    }
+
+    @Test
+    public void doesNotListenOnTcp() {
+        assertEquals(-1, service.port());
+    }
+
+    @Test
+    public void neverDeletesARegularFile() throws IOException {
+        Path file = Files.createTempFile("sparkbridge", ".sock");
+        try {
+            Service.removeStaleSocket(file);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            assertTrue(Files.exists(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void neverDeletesALiveSocket() {
+        try {
+            Service.removeStaleSocket(socket);
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("another server"));
+        }
+        assertTrue(Files.exists(socket));
+    }
+
+    private static String exchange(String request) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            channel.write(ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII)));
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            StringBuilder response = new StringBuilder();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                response.append(StandardCharsets.UTF_8.decode(buffer));
+                buffer.clear();
+            }
+            return response.toString();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package spark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
+import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Topic broadcast to many WebSocket clients, and disconnection of a client that stops reading
+ */
+public class WebSocketTest {
+
+    private static final int CLIENTS = 200;
+    private static final WebSocketTopic prices = new WebSocketTopic("prices", 64, WebSocketTopic.Policy.DISCONNECT);
+    private static final WebSocketTopic bulk = new WebSocketTopic("bulk", 4, WebSocketTopic.Policy.DISCONNECT);
+    private static final HttpClient client = HttpClient.newHttpClient();
+    private static Service service;
+
+    /**
+     * Subscribes every session to its topic for as long as it is open
+     */
+    public static class TopicSocket {
+
+        private final WebSocketTopic topic;
+
+        TopicSocket(WebSocketTopic topic) {
+            this.topic = topic;
+        }
+
+        @OnWebSocketConnect
+        public void connected(Session session) {
+            topic.subscribe(session);
+        }
+
+        @OnWebSocketClose
+        public void closed(Session session, int status, String reason) {
+            topic.unsubscribe(session);
+        }
+    }
+
+    @BeforeClass
+    public static void startService() {
+        service = Service.ignite().port(0);
+        service.webSocket("/prices", new TopicSocket(prices));
+        service.webSocket("/bulk", new TopicSocket(bulk));
+        service.awaitInitialization();
+    }
+
+    @AfterClass
+    public static void stopService() {
+        service.stop();
+    }
+
+    @Test
+    public void broadcastsToEveryClient() throws Exception {
+        CountDownLatch received = new CountDownLatch(CLIENTS * 11);
+        List<WebSocket> sockets = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            sockets.add(connect("/prices", new WebSocket.Listener() {
+                @Override
+                public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                    received.countDown();
+                    webSocket.request(1);
+                    return null;
+                }
+
+                @Override
+                public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+                    received.countDown();
+                    webSocket.request(1);
+                    return null;
+                }
+            }));
+        }
+        await(() -> prices.subscribers() == CLIENTS);
+
+        for (int i = 0; i < 10; i++) {
+            prices.publish("price " + i);
+        }
+        prices.publish(new byte[] {1, 2, 3});
+        assertTrue(received.await(10, TimeUnit.SECONDS));
+        assertEquals(0, prices.dropped());
+        assertEquals(0, prices.disconnected());
+
+        for (WebSocket socket : sockets) {
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "done").join();
+        }
+        await(() -> prices.subscribers() == 0);
+    }
+
+    @Test
+    public void disconnectsAClientThatStopsReading() throws Exception {
+        Semaphore fastReceived = new Semaphore(0);
+        WebSocket fast = connect("/bulk", new WebSocket.Listener() {
+            @Override
+            public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+                if (last) {
+                    fastReceived.release();
+                }
+                webSocket.request(1);
+                return null;
+            }
+        });
+        connect("/bulk", new WebSocket.Listener() {
+            @Override
+            public void onOpen(WebSocket webSocket) {
+                // Never asks for a message, so the server's writes back up
+            }
+        });
+        await(() -> bulk.subscribers() == 2);
+
+        byte[] message = new byte[64 * 1024];
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (bulk.disconnected() == 0 && System.nanoTime() < deadline) {
+            bulk.publish(message);
+            // Paced by the fast client, which never has more than one message pending
+            assertTrue(fastReceived.tryAcquire(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, bulk.disconnected());
+        assertEquals(1, bulk.subscribers());
+
+        // The fast client still receives
+        bulk.publish(message);
+        assertTrue(fastReceived.tryAcquire(5, TimeUnit.SECONDS));
+        fast.sendClose(WebSocket.NORMAL_CLOSURE, "done").join();
+    }
+
+    private static WebSocket connect(String path, WebSocket.Listener listener) {
+        return client.newWebSocketBuilder()
+            .buildAsync(URI.create("ws://localhost:" + service.port() + path), listener)
+            .join();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}